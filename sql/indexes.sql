@@ -0,0 +1,35 @@
+-- Indexes backing the listing and search endpoints, create them after loading a dump.
+
+-- GET /api/artists/{id}/releases seeks past the previous page on (artist_id, release_id).
+create index if not exists release_artist_maps_artist_id_release_id_idx
+    on release_artist_maps (artist_id, release_id);
+
+-- GET /api/labels/{id}/releases seeks past the previous page on (label_id, release_id).
+create index if not exists release_labels_label_id_release_id_idx
+    on release_labels (label_id, release_id);
+
+-- GET /api/masters/{id}/versions seeks past the previous page on (master_id, id).
+create index if not exists releases_master_id_id_idx
+    on releases (master_id, id);
+
+-- GET /api/database/search matches words with full text indexes over the 'simple' configuration,
+-- which does not stem so that names and titles in any language match as written. The indexes are
+-- on expressions, so PostgreSQL keeps them up to date on every insert and update. Trigram
+-- similarity, used for ranking, comes with pg_trgm.
+create extension if not exists pg_trgm;
+
+create index if not exists artists_name_fts_idx
+    on artists using gin (to_tsvector('simple', name));
+
+create index if not exists labels_name_fts_idx
+    on labels using gin (to_tsvector('simple', name));
+
+create index if not exists releases_title_fts_idx
+    on releases using gin (to_tsvector('simple', title));
+
+create index if not exists masters_main_release_id_idx
+    on masters (main_release_id);
+
+-- type=catno matches a prefix of the catalog number without case, spaces and punctuation.
+create index if not exists release_labels_catno_idx
+    on release_labels (upper(regexp_replace(catno, '[^[:alnum:]]', '', 'g')) text_pattern_ops);
@@ -0,0 +1,103 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.RELEASE_ARTIST_MAPS;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Release pages of the most prolific artists of a {@link DatabaseFixture}, requested from an
+ * {@link InProcessService} at a cursor {@code depth} of the way into each listing. Pages seek on
+ * the {@code (ARTIST_ID, RELEASE_ID)} index and their stats only count the listing, so the latency
+ * should not grow with the depth. The setup prints the length of the listings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ArtistReleasesPageBenchmark {
+
+  private static final int ARTISTS = 10;
+
+  @Param({"100000"})
+  int releases;
+
+  /** Position of the page in the listing, {@code 0} is the first page. */
+  @Param({"0", "0.5", "0.99"})
+  double depth;
+
+  private DatabaseFixture database;
+  private InProcessService service;
+  private HttpClient client;
+  private String[] paths;
+
+  @Setup
+  public void setUp() throws IOException {
+    database = DatabaseFixture.start(releases);
+
+    var create = database.create();
+    List<Integer> artistIds =
+        create
+            .select(RELEASE_ARTIST_MAPS.ARTIST_ID)
+            .from(RELEASE_ARTIST_MAPS)
+            .groupBy(RELEASE_ARTIST_MAPS.ARTIST_ID)
+            .orderBy(DSL.countDistinct(RELEASE_ARTIST_MAPS.RELEASE_ID).desc())
+            .limit(ARTISTS)
+            .fetch(RELEASE_ARTIST_MAPS.ARTIST_ID);
+
+    paths = new String[artistIds.size()];
+    var lengths = new int[artistIds.size()];
+    for (int i = 0; i < paths.length; i++) {
+      List<Integer> releaseIds =
+          create
+              .selectDistinct(RELEASE_ARTIST_MAPS.RELEASE_ID)
+              .from(RELEASE_ARTIST_MAPS)
+              .where(RELEASE_ARTIST_MAPS.ARTIST_ID.eq(artistIds.get(i)))
+              .orderBy(RELEASE_ARTIST_MAPS.RELEASE_ID)
+              .fetch(RELEASE_ARTIST_MAPS.RELEASE_ID);
+      int start = (int) (depth * releaseIds.size());
+      int previous = start > 0 ? releaseIds.get(start - 1) : 0;
+      paths[i] = "artists/" + artistIds.get(i) + "/releases?previous=" + previous;
+      lengths[i] = releaseIds.size();
+    }
+    System.out.printf(
+        "%nReleases of the %d most prolific artists: %s%n", ARTISTS, Arrays.toString(lengths));
+
+    System.setProperty("ENTITY_SOURCE", "database");
+    service = InProcessService.start(database.getJdbcUrl());
+    client = HttpClient.newHttpClient();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    service.close();
+    database.close();
+  }
+
+  @Benchmark
+  public byte[] getReleasesOfArtist() throws IOException, InterruptedException {
+    var path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+    var request = HttpRequest.newBuilder(URI.create(service.getBaseUri() + "/" + path)).build();
+    var response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException(response.statusCode() + " from " + request.uri());
+    }
+    return response.body();
+  }
+}
@@ -0,0 +1,38 @@
+package tslic.discogs;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+
+/** A throwaway PostgreSQL server holding a dump made by {@link DatasetGenerator}. */
+final class DatabaseFixture implements AutoCloseable {
+
+  private final EmbeddedPostgres postgres;
+
+  private DatabaseFixture(EmbeddedPostgres postgres) {
+    this.postgres = postgres;
+  }
+
+  static DatabaseFixture start(int releases) throws IOException {
+    var fixture = new DatabaseFixture(EmbeddedPostgres.start());
+    var generator = new DatasetGenerator(fixture.create(), 1);
+    generator.createSchema();
+    generator.generate(releases);
+    return fixture;
+  }
+
+  DSLContext create() {
+    return DSL.using(postgres.getPostgresDatabase(), SQLDialect.POSTGRES);
+  }
+
+  String getJdbcUrl() {
+    return postgres.getJdbcUrl("postgres", "postgres");
+  }
+
+  @Override
+  public void close() throws IOException {
+    postgres.close();
+  }
+}
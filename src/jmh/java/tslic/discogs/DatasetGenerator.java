@@ -0,0 +1,346 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.ARTIST_ALIASES;
+import static tslic.discogs.Tables.ARTIST_GROUPS;
+import static tslic.discogs.Tables.ARTIST_MEMBERS;
+import static tslic.discogs.Tables.ARTIST_NAMEVARIATIONS;
+import static tslic.discogs.Tables.ARTIST_URLS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.LABEL_SUBLABELS;
+import static tslic.discogs.Tables.LABEL_URLS;
+import static tslic.discogs.Tables.MASTERS;
+import static tslic.discogs.Tables.RELEASES;
+import static tslic.discogs.Tables.RELEASE_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_COMPANIES;
+import static tslic.discogs.Tables.RELEASE_EXTRA_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_FORMATS;
+import static tslic.discogs.Tables.RELEASE_GENRES;
+import static tslic.discogs.Tables.RELEASE_LABELS;
+import static tslic.discogs.Tables.RELEASE_STYLES;
+import static tslic.discogs.Tables.RELEASE_VIDEOS;
+import static tslic.discogs.Tables.TRACKS;
+import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
+import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.TableRecord;
+import org.jooq.impl.DSL;
+
+/**
+ * Fills the tables of the generated jOOQ schema with a synthetic dump shaped like the real one.
+ * Tracklist, credit and name variation counts are log-normal, so most releases are small and a few
+ * are huge box sets. Releases pick their artist, label and master Zipf distributed, so a few
+ * artists, labels and masters own most of them. The same seed always produces the same dump.
+ *
+ * <p>Run it against the database of the service with {@code gradle generateDataset
+ * -DDATASET_RELEASES=1000000}.
+ */
+final class DatasetGenerator {
+
+  private static final Logger log = LogManager.getLogger(DatasetGenerator.class);
+
+  private static final int BATCH_SIZE = 10_000;
+  private static final String[] GENRES = {"Electronic", "Rock", "Jazz", "Pop", "Hip Hop", "Funk"};
+  private static final String[] STYLES = {"House", "Techno", "Punk", "Disco", "Soul", "Ambient"};
+  private static final String[] ROLES = {"Producer", "Mixed By", "Written-By", "Mastered By"};
+
+  private final DSLContext create;
+  private final Random random;
+  private final List<TableRecord<?>> batch = new ArrayList<>();
+
+  DatasetGenerator(DSLContext create, long seed) {
+    this.create = create;
+    this.random = new Random(seed);
+  }
+
+  public static void main(String[] args) throws SQLException {
+    int releases = Config.getInt("DATASET_RELEASES", 100_000);
+    try (var connection =
+        DriverManager.getConnection(
+            Config.getString("DB_URL", null),
+            Config.getString("DB_USER", null),
+            Config.getString("DB_PASSWORD", null))) {
+      var generator =
+          new DatasetGenerator(
+              DSL.using(connection, SQLDialect.POSTGRES), Config.getLong("DATASET_SEED", 1));
+      if (Config.getBoolean("DATASET_CREATE_SCHEMA", false)) {
+        generator.createSchema();
+      }
+      generator.generate(releases);
+    }
+  }
+
+  static int artists(int releases) {
+    return Math.max(1, releases / 4);
+  }
+
+  static int labels(int releases) {
+    return Math.max(1, releases / 20);
+  }
+
+  static int masters(int releases) {
+    return Math.max(1, releases / 3);
+  }
+
+  void createSchema() {
+    var ddl =
+        create.ddl(
+            ARTISTS,
+            ARTIST_ALIASES,
+            ARTIST_GROUPS,
+            ARTIST_MEMBERS,
+            ARTIST_NAMEVARIATIONS,
+            ARTIST_URLS,
+            LABELS,
+            LABEL_SUBLABELS,
+            LABEL_URLS,
+            MASTERS,
+            RELEASES,
+            RELEASE_ARTIST_MAPS,
+            RELEASE_COMPANIES,
+            RELEASE_EXTRA_ARTIST_MAPS,
+            RELEASE_FORMATS,
+            RELEASE_GENRES,
+            RELEASE_LABELS,
+            RELEASE_STYLES,
+            RELEASE_VIDEOS,
+            TRACKS,
+            TRACK_ARTIST_MAPS,
+            TRACK_EXTRA_ARTIST_MAPS);
+    for (var query : ddl.queries()) {
+      query.execute();
+    }
+  }
+
+  void generate(int releases) {
+    long start = System.nanoTime();
+    int artists = artists(releases);
+    int labels = labels(releases);
+    int masters = masters(releases);
+
+    var artistOfRelease = new Zipf(artists, 0.9, random);
+    var labelOfRelease = new Zipf(labels, 1.1, random);
+    var masterOfRelease = new Zipf(masters, 0.8, random);
+    var creditedArtist = new Zipf(artists, 1.0, random);
+
+    // masters are inserted first and need their main release, the first release of each
+    var masterIds = new int[releases + 1];
+    var mainReleaseIds = new int[masters + 1];
+    for (int id = 1; id <= releases; id++) {
+      if (random.nextDouble() < 0.4) {
+        int masterId = masterOfRelease.next(random);
+        masterIds[id] = masterId;
+        if (mainReleaseIds[masterId] == 0) {
+          mainReleaseIds[masterId] = id;
+        }
+      }
+    }
+
+    for (int id = 1; id <= artists; id++) {
+      addArtist(id);
+    }
+    for (int id = 1; id <= labels; id++) {
+      addLabel(id);
+    }
+    for (int id = 1; id <= masters; id++) {
+      var master = create.newRecord(MASTERS);
+      master.set(MASTERS.ID, id);
+      master.set(MASTERS.MAIN_RELEASE_ID, mainReleaseIds[id] == 0 ? null : mainReleaseIds[id]);
+      add(master);
+    }
+    for (int id = 1; id <= releases; id++) {
+      addRelease(
+          id,
+          masterIds[id] == 0 ? null : masterIds[id],
+          artistOfRelease.next(random),
+          labelOfRelease.next(random),
+          creditedArtist);
+      if (id % 100_000 == 0) {
+        log.info("Generated {} of {} releases", id, releases);
+      }
+    }
+    flush();
+    create.execute("analyze");
+    log.info(
+        "Generated {} releases, {} artists, {} labels and {} masters in {} s",
+        releases,
+        artists,
+        labels,
+        masters,
+        (System.nanoTime() - start) / 1_000_000_000);
+  }
+
+  private void addArtist(int id) {
+    var artist = create.newRecord(ARTISTS);
+    artist.set(ARTISTS.ID, id);
+    artist.set(ARTISTS.NAME, "Artist " + id);
+    artist.set(ARTISTS.REAL_NAME, "Real Name " + id);
+    artist.set(ARTISTS.PROFILE, text(logNormal(20, 1.0, 2_000)));
+    artist.set(ARTISTS.STATUS, "Accepted");
+    artist.set(ARTISTS.DATA_QUALITY, "Needs Vote");
+    add(artist);
+
+    for (int ofst = 0, n = logNormal(1, 1.0, 200); ofst < n; ofst++) {
+      var variation = create.newRecord(ARTIST_NAMEVARIATIONS);
+      variation.set(ARTIST_NAMEVARIATIONS.ARTIST_ID, id);
+      variation.set(ARTIST_NAMEVARIATIONS.OFST, ofst);
+      variation.set(ARTIST_NAMEVARIATIONS.NAMEVARIATION, "Artist " + id + " Variation " + ofst);
+      add(variation);
+    }
+    for (int ofst = 0, n = random.nextInt(3); ofst < n; ofst++) {
+      var url = create.newRecord(ARTIST_URLS);
+      url.set(ARTIST_URLS.ARTIST_ID, id);
+      url.set(ARTIST_URLS.OFST, ofst);
+      url.set(ARTIST_URLS.URL, "https://example.com/artists/" + id + "/" + ofst);
+      add(url);
+    }
+  }
+
+  private void addLabel(int id) {
+    var label = create.newRecord(LABELS);
+    label.set(LABELS.ID, id);
+    label.set(LABELS.NAME, "Label " + id);
+    label.set(LABELS.PROFILE, text(logNormal(10, 1.0, 1_000)));
+    label.set(LABELS.DATA_QUALITY, "Needs Vote");
+    add(label);
+
+    for (int ofst = 0, n = random.nextInt(2); ofst < n; ofst++) {
+      var url = create.newRecord(LABEL_URLS);
+      url.set(LABEL_URLS.LABEL_ID, id);
+      url.set(LABEL_URLS.OFST, ofst);
+      url.set(LABEL_URLS.URL, "https://example.com/labels/" + id + "/" + ofst);
+      add(url);
+    }
+  }
+
+  private void addRelease(
+      int id, Integer masterId, int artistId, int labelId, Zipf creditedArtist) {
+    var release = create.newRecord(RELEASES);
+    release.set(RELEASES.ID, id);
+    release.set(RELEASES.MASTER_ID, masterId);
+    release.set(RELEASES.TITLE, "Release " + id);
+    release.set(RELEASES.COUNTRY, "UK");
+    release.set(RELEASES.STATUS, "Accepted");
+    release.set(RELEASES.DATA_QUALITY, "Needs Vote");
+    release.set(RELEASES.RELEASED, String.valueOf(1950 + random.nextInt(70)));
+    release.set(RELEASES.NOTES, text(logNormal(5, 1.5, 5_000)));
+    add(release);
+
+    var releaseArtist = create.newRecord(RELEASE_ARTIST_MAPS);
+    releaseArtist.set(RELEASE_ARTIST_MAPS.RELEASE_ID, id);
+    releaseArtist.set(RELEASE_ARTIST_MAPS.OFST, 0);
+    releaseArtist.set(RELEASE_ARTIST_MAPS.ARTIST_ID, artistId);
+    releaseArtist.set(RELEASE_ARTIST_MAPS.NAME, "Artist " + artistId);
+    add(releaseArtist);
+
+    var releaseLabel = create.newRecord(RELEASE_LABELS);
+    releaseLabel.set(RELEASE_LABELS.RELEASE_ID, id);
+    releaseLabel.set(RELEASE_LABELS.OFST, 0);
+    releaseLabel.set(RELEASE_LABELS.LABEL_ID, labelId);
+    releaseLabel.set(RELEASE_LABELS.NAME, "Label " + labelId);
+    releaseLabel.set(RELEASE_LABELS.CATNO, "CAT " + id);
+    add(releaseLabel);
+
+    var genre = create.newRecord(RELEASE_GENRES);
+    genre.set(RELEASE_GENRES.RELEASE_ID, id);
+    genre.set(RELEASE_GENRES.OFST, 0);
+    genre.set(RELEASE_GENRES.GENRE, GENRES[random.nextInt(GENRES.length)]);
+    add(genre);
+
+    for (int ofst = 0, n = random.nextInt(4); ofst < n; ofst++) {
+      var style = create.newRecord(RELEASE_STYLES);
+      style.set(RELEASE_STYLES.RELEASE_ID, id);
+      style.set(RELEASE_STYLES.OFST, ofst);
+      style.set(RELEASE_STYLES.STYLE, STYLES[(id + ofst) % STYLES.length]);
+      add(style);
+    }
+
+    var format = create.newRecord(RELEASE_FORMATS);
+    format.set(RELEASE_FORMATS.RELEASE_ID, id);
+    format.set(RELEASE_FORMATS.OFST, 0);
+    format.set(RELEASE_FORMATS.NAME, random.nextBoolean() ? "Vinyl" : "CD");
+    format.set(RELEASE_FORMATS.QTY, String.valueOf(logNormal(1, 0.5, 100)));
+    add(format);
+
+    int videos = random.nextDouble() < 0.7 ? 0 : 1 + random.nextInt(5);
+    for (int ofst = 0; ofst < videos; ofst++) {
+      var video = create.newRecord(RELEASE_VIDEOS);
+      video.set(RELEASE_VIDEOS.RELEASE_ID, id);
+      video.set(RELEASE_VIDEOS.OFST, ofst);
+      video.set(RELEASE_VIDEOS.SRC, "https://example.com/videos/" + id + "/" + ofst);
+      video.set(RELEASE_VIDEOS.TITLE, "Video " + ofst);
+      video.set(RELEASE_VIDEOS.DURATION, "245");
+      video.set(RELEASE_VIDEOS.EMBED, true);
+      add(video);
+    }
+
+    for (int ofst = 0, n = logNormal(3, 1.2, 500); ofst < n; ofst++) {
+      int creditedId = creditedArtist.next(random);
+      var extraArtist = create.newRecord(RELEASE_EXTRA_ARTIST_MAPS);
+      extraArtist.set(RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID, id);
+      extraArtist.set(RELEASE_EXTRA_ARTIST_MAPS.OFST, ofst);
+      extraArtist.set(RELEASE_EXTRA_ARTIST_MAPS.ARTIST_ID, creditedId);
+      extraArtist.set(RELEASE_EXTRA_ARTIST_MAPS.NAME, "Artist " + creditedId);
+      extraArtist.set(RELEASE_EXTRA_ARTIST_MAPS.ROLE, ROLES[random.nextInt(ROLES.length)]);
+      add(extraArtist);
+    }
+
+    for (int trackOfst = 0, n = logNormal(10, 0.7, 1_000); trackOfst < n; trackOfst++) {
+      var track = create.newRecord(TRACKS);
+      track.set(TRACKS.RELEASE_ID, id);
+      track.set(TRACKS.OFST, trackOfst);
+      track.set(TRACKS.POSITION, String.valueOf(trackOfst + 1));
+      track.set(TRACKS.TITLE, "Track " + trackOfst);
+      track.set(TRACKS.DURATION, (2 + random.nextInt(6)) + ":" + (10 + random.nextInt(50)));
+      add(track);
+
+      // most tracks are credited to the release artist only and have no rows of their own
+      int trackArtists = random.nextDouble() < 0.6 ? 0 : 1 + geometric(0.5);
+      for (int artistOfst = 0; artistOfst < trackArtists; artistOfst++) {
+        int creditedId = creditedArtist.next(random);
+        var trackArtist = create.newRecord(TRACK_ARTIST_MAPS);
+        trackArtist.set(TRACK_ARTIST_MAPS.RELEASE_ID, id);
+        trackArtist.set(TRACK_ARTIST_MAPS.TRACK_OFST, trackOfst);
+        trackArtist.set(TRACK_ARTIST_MAPS.ARTIST_OFST, artistOfst);
+        trackArtist.set(TRACK_ARTIST_MAPS.ARTIST_ID, creditedId);
+        trackArtist.set(TRACK_ARTIST_MAPS.NAME, "Artist " + creditedId);
+        trackArtist.set(TRACK_ARTIST_MAPS.JOIN_RELATION, "&");
+        add(trackArtist);
+      }
+    }
+  }
+
+  /** Log-normally distributed count with the given median, at most {@code max}. */
+  private int logNormal(double median, double sigma, int max) {
+    return (int) Math.min(max, Math.round(median * Math.exp(sigma * random.nextGaussian())));
+  }
+
+  private int geometric(double p) {
+    return (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+  }
+
+  private String text(int words) {
+    return "lorem ".repeat(words).trim();
+  }
+
+  private void add(TableRecord<?> record) {
+    batch.add(record);
+    if (batch.size() >= BATCH_SIZE) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    create.batchInsert(batch).execute();
+    batch.clear();
+  }
+}
@@ -0,0 +1,94 @@
+package tslic.discogs;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Whole requests against an {@link InProcessService} on top of a {@link DatabaseFixture}. Entities
+ * are requested by uniformly random ids over the loopback interface. Run with many threads ({@code
+ * -t 256}) to compare how the JDBC and non-blocking backends hold up under concurrency, and with
+ * {@link LoadDriver} for latency percentiles under a realistic request mix. {@link
+ * ArtistReleasesPageBenchmark} covers paginated listings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HttpBenchmark {
+
+  @Param({"10000"})
+  int releases;
+
+  /** A JDBC fetch mode, or {@code reactive} for the non-blocking client. */
+  @Param({"fanout", "aggregate", "pipelined", "reactive"})
+  String backend;
+
+  /** Whether the entity and response caches are enabled. */
+  @Param({"false"})
+  boolean caches;
+
+  private DatabaseFixture database;
+  private InProcessService service;
+  private HttpClient client;
+
+  @Setup
+  public void setUp() throws IOException {
+    database = DatabaseFixture.start(releases);
+
+    if (backend.equals("reactive")) {
+      System.setProperty("ENTITY_SOURCE", "reactive");
+    } else {
+      System.setProperty("ENTITY_SOURCE", "database");
+      System.setProperty("DB_FETCH_MODE", backend);
+    }
+    System.setProperty("ENTITY_CACHE_MAX_BYTES", caches ? String.valueOf(256L << 20) : "0");
+    System.setProperty("RESPONSE_CACHE_MAX_BYTES", caches ? String.valueOf(256L << 20) : "0");
+    service = InProcessService.start(database.getJdbcUrl());
+
+    client = HttpClient.newHttpClient();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    // threads needed to serve the load, compare between backends along with the p99
+    System.out.printf(
+        "%n%s backend peak live threads: %d%n",
+        backend, ManagementFactory.getThreadMXBean().getPeakThreadCount());
+    service.close();
+    database.close();
+  }
+
+  @Benchmark
+  public byte[] getRelease() throws IOException, InterruptedException {
+    return get("releases/" + ThreadLocalRandom.current().nextInt(1, releases + 1));
+  }
+
+  @Benchmark
+  public byte[] getReleasesOfArtist() throws IOException, InterruptedException {
+    int artists = DatasetGenerator.artists(releases);
+    return get("artists/" + ThreadLocalRandom.current().nextInt(1, artists + 1) + "/releases");
+  }
+
+  private byte[] get(String path) throws IOException, InterruptedException {
+    var request = HttpRequest.newBuilder(URI.create(service.getBaseUri() + "/" + path)).build();
+    var response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException(response.statusCode() + " from " + request.uri());
+    }
+    return response.body();
+  }
+}
@@ -0,0 +1,58 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.jboss.weld.environment.se.Weld;
+import tslic.discogs.Main.DiscogsApplication;
+
+/**
+ * The service started as in {@link Main} on a free port of the loopback interface. It is
+ * configured through system properties, which have to be set before it starts.
+ */
+final class InProcessService implements AutoCloseable {
+
+  private final Weld weld;
+  private final HttpServer server;
+  private final URI baseUri;
+
+  private InProcessService(Weld weld, HttpServer server, URI baseUri) {
+    this.weld = weld;
+    this.server = server;
+    this.baseUri = baseUri;
+  }
+
+  static InProcessService start(String jdbcUrl) throws IOException {
+    System.setProperty("DB_URL", jdbcUrl);
+
+    var weld = new Weld();
+    var container = weld.initialize();
+
+    var baseUri = URI.create(String.format("http://localhost:%d/api", freePort()));
+    var rc = ResourceConfig.forApplicationClass(DiscogsApplication.class);
+    var server = GrizzlyHttpServerFactory.createHttpServer(baseUri, rc, false);
+    Metrics.monitor(server, container.select(MeterRegistry.class).get());
+    server.start();
+    return new InProcessService(weld, server, baseUri);
+  }
+
+  URI getBaseUri() {
+    return baseUri;
+  }
+
+  @Override
+  public void close() {
+    server.shutdownNow();
+    weld.shutdown();
+  }
+
+  private static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
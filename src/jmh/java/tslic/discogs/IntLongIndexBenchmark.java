@@ -0,0 +1,111 @@
+package tslic.discogs;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Lookups of random present keys in an {@link IntLongIndex} and in the {@code HashMap<Integer,
+ * Long>} it replaces, for ids that are dense, as in a full dump, and ids sparse over a range ten
+ * times their number, which {@link IntLongIndex#of} keeps in {@link IntLongIndex.OpenAddressing}.
+ * The setup prints the heap retained by each, measured around their construction after full
+ * collections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IntLongIndexBenchmark {
+
+  private static final int LOOKUPS = 1024;
+
+  @Param({"1000000"})
+  int size;
+
+  @Param({"dense", "sparse"})
+  String keys;
+
+  private IntLongIndex index;
+  private Map<Integer, Long> hashMap;
+  private int[] lookups;
+
+  @Setup
+  public void setUp() {
+    var random = new Random(42);
+    int[] indexKeys = new int[size];
+    long[] values = new long[size];
+    for (int i = 0; i < size; i++) {
+      indexKeys[i] = keys.equals("dense") ? i + 1 : i * 10 + 1 + random.nextInt(10);
+      values[i] = 64L * i;
+    }
+
+    long indexBytes = retainedBytes(() -> index = IntLongIndex.of(indexKeys, values));
+    long hashMapBytes =
+        retainedBytes(
+            () -> {
+              hashMap = new HashMap<>();
+              for (int i = 0; i < size; i++) {
+                hashMap.put(indexKeys[i], values[i]);
+              }
+              return hashMap;
+            });
+    System.out.printf(
+        "%n%s, %d %s keys: %.1f bytes per entry, HashMap<Integer, Long> %.1f%n",
+        index.getClass().getSimpleName(),
+        size,
+        keys,
+        (double) indexBytes / size,
+        (double) hashMapBytes / size);
+
+    lookups = new int[LOOKUPS];
+    for (int i = 0; i < LOOKUPS; i++) {
+      lookups[i] = indexKeys[random.nextInt(size)];
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public long index() {
+    long sum = 0;
+    for (int key : lookups) {
+      sum += index.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LOOKUPS)
+  public long hashMap() {
+    long sum = 0;
+    for (int key : lookups) {
+      sum += hashMap.get(key);
+    }
+    return sum;
+  }
+
+  /** Heap in use after building the object less before, the object must stay reachable. */
+  private static long retainedBytes(Supplier<Object> builder) {
+    long before = usedHeap();
+    Object built = builder.get();
+    long after = usedHeap();
+    return built != null ? after - before : 0;
+  }
+
+  private static long usedHeap() {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+}
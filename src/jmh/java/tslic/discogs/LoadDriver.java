@@ -0,0 +1,238 @@
+package tslic.discogs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives single entity requests for the artists, releases, labels and masters endpoints at a
+ * dataset made by {@link DatasetGenerator} and reports throughput and latency percentiles. Ids are
+ * drawn Zipf distributed, so that a few entities get most of the requests as in production.
+ *
+ * <p>In the {@code open} mode requests are sent at a fixed rate regardless of how fast they are
+ * answered. In the {@code closed} mode a fixed number of clients send one request after the other,
+ * each at its share of the rate. Either way latency is measured from when a request was due
+ * rather than when it was sent, so a stalled service is charged for the requests it held back
+ * (coordinated omission). A closed loop without a rate measures service time only.
+ *
+ * <p>Without {@code LOAD_BASE_URL} the service is started in-process on an embedded database
+ * generated for the run, which is good for comparing changes but not for sizing hardware.
+ */
+public class LoadDriver {
+
+  private static final String[] ENDPOINTS = {"artists", "releases", "labels", "masters"};
+
+  private final Mode mode = Config.getEnum("LOAD_MODE", Mode.class, Mode.OPEN);
+  private final int rate = Config.getInt("LOAD_RATE", 200);
+  private final int concurrency = Config.getInt("LOAD_CONCURRENCY", 16);
+  private final Duration warmup = Duration.ofSeconds(Config.getLong("LOAD_WARMUP_SECONDS", 10));
+  private final Duration duration = Duration.ofSeconds(Config.getLong("LOAD_DURATION_SECONDS", 60));
+  private final double[] mix = parseMix(Config.getString("LOAD_MIX", "25,50,15,10"));
+
+  private final URI baseUri;
+  private final Zipf[] ids = new Zipf[ENDPOINTS.length];
+  private final Histogram[] latencies = new Histogram[ENDPOINTS.length];
+  private final AtomicLong errors = new AtomicLong();
+  private final HttpClient client =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+  enum Mode {
+    OPEN,
+    CLOSED
+  }
+
+  LoadDriver(URI baseUri, int releases, long seed) {
+    this.baseUri = baseUri;
+    var random = new Random(seed);
+    double exponent = Double.parseDouble(Config.getString("LOAD_ZIPF_EXPONENT", "1.0"));
+    ids[0] = new Zipf(DatasetGenerator.artists(releases), exponent, random);
+    ids[1] = new Zipf(releases, exponent, random);
+    ids[2] = new Zipf(DatasetGenerator.labels(releases), exponent, random);
+    ids[3] = new Zipf(DatasetGenerator.masters(releases), exponent, random);
+    for (int i = 0; i < ENDPOINTS.length; i++) {
+      latencies[i] = new ConcurrentHistogram(3);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int releases = Config.getInt("DATASET_RELEASES", 100_000);
+    long seed = Config.getLong("LOAD_SEED", 1);
+    var baseUrl = Config.getString("LOAD_BASE_URL", null);
+
+    if (baseUrl != null) {
+      new LoadDriver(URI.create(baseUrl), releases, seed).run();
+      return;
+    }
+    try (var database = DatabaseFixture.start(releases);
+        var service = InProcessService.start(database.getJdbcUrl())) {
+      new LoadDriver(service.getBaseUri(), releases, seed).run();
+    }
+  }
+
+  void run() throws InterruptedException {
+    System.out.printf(
+        "%s loop, %d requests/s, %d clients, %s warmup, %s measured, against %s%n",
+        mode.name().toLowerCase(Locale.ROOT), rate, concurrency, warmup, duration, baseUri);
+
+    long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    long measureFrom = start + warmup.toNanos();
+    long end = measureFrom + duration.toNanos();
+    if (mode == Mode.OPEN) {
+      runOpen(start, measureFrom, end);
+    } else {
+      runClosed(start, measureFrom, end);
+    }
+    report();
+  }
+
+  /** One thread sends requests asynchronously at their due times. */
+  private void runOpen(long start, long measureFrom, long end) throws InterruptedException {
+    var random = new Random(0);
+    long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+    var inFlight = new AtomicLong();
+    for (long due = start; due < end; due += interval) {
+      parkUntil(due);
+      int endpoint = pickEndpoint(random);
+      var request = request(endpoint, ids[endpoint].next(random));
+      long scheduled = due;
+      inFlight.incrementAndGet();
+      client
+          .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .whenComplete(
+              (response, e) -> {
+                record(endpoint, scheduled, measureFrom, response, e);
+                inFlight.decrementAndGet();
+              });
+    }
+    while (inFlight.get() > 0) {
+      Thread.sleep(10);
+    }
+  }
+
+  /** Every client waits for its response before sending the next request. */
+  private void runClosed(long start, long measureFrom, long end) throws InterruptedException {
+    long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * concurrency / rate : 0;
+    var done = new CountDownLatch(concurrency);
+    for (int c = 0; c < concurrency; c++) {
+      var random = new Random(c);
+      long first = start + (interval * c) / concurrency;
+      var worker =
+          new Thread(
+              () -> {
+                long due = first;
+                while (due < end) {
+                  if (interval > 0) {
+                    parkUntil(due);
+                  } else {
+                    due = System.nanoTime();
+                  }
+                  int endpoint = pickEndpoint(random);
+                  var request = request(endpoint, ids[endpoint].next(random));
+                  try {
+                    var response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    record(endpoint, due, measureFrom, response, null);
+                  } catch (IOException | InterruptedException e) {
+                    record(endpoint, due, measureFrom, null, e);
+                  }
+                  due += interval;
+                }
+                done.countDown();
+              },
+              "load-client-" + c);
+      worker.start();
+    }
+    done.await();
+  }
+
+  private void record(
+      int endpoint, long due, long measureFrom, HttpResponse<?> response, Throwable e) {
+    if (due < measureFrom) {
+      return;
+    }
+    if (e != null || response.statusCode() != 200) {
+      errors.incrementAndGet();
+      return;
+    }
+    latencies[endpoint].recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+  }
+
+  private void report() {
+    var total = new Histogram(3);
+    System.out.printf(
+        "%-10s %10s %10s %10s %10s %10s %10s%n",
+        "endpoint", "requests/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "count");
+    for (int i = 0; i < ENDPOINTS.length; i++) {
+      print(ENDPOINTS[i], latencies[i]);
+      total.add(latencies[i]);
+    }
+    print("all", total);
+    System.out.printf("errors %d%n", errors.get());
+  }
+
+  private void print(String name, Histogram histogram) {
+    System.out.printf(
+        "%-10s %10.1f %10.2f %10.2f %10.2f %10.2f %10d%n",
+        name,
+        histogram.getTotalCount() / (double) duration.toSeconds(),
+        histogram.getValueAtPercentile(50) / 1000.0,
+        histogram.getValueAtPercentile(99) / 1000.0,
+        histogram.getValueAtPercentile(99.9) / 1000.0,
+        histogram.getMaxValue() / 1000.0,
+        histogram.getTotalCount());
+  }
+
+  private HttpRequest request(int endpoint, int id) {
+    return HttpRequest.newBuilder(URI.create(baseUri + "/" + ENDPOINTS[endpoint] + "/" + id))
+        .timeout(Duration.ofSeconds(30))
+        .build();
+  }
+
+  private int pickEndpoint(Random random) {
+    double r = random.nextDouble();
+    for (int i = 0; i < mix.length - 1; i++) {
+      if (r < mix[i]) {
+        return i;
+      }
+    }
+    return mix.length - 1;
+  }
+
+  /** Cumulative shares of the endpoints from weights in the order of {@link #ENDPOINTS}. */
+  private static double[] parseMix(String weights) {
+    List<Double> parsed = new ArrayList<>();
+    for (var weight : weights.split(",")) {
+      parsed.add(Double.parseDouble(weight.trim()));
+    }
+    if (parsed.size() != ENDPOINTS.length) {
+      throw new IllegalArgumentException("LOAD_MIX needs a weight for each of " + ENDPOINTS.length);
+    }
+
+    double sum = parsed.stream().mapToDouble(Double::doubleValue).sum();
+    var cumulative = new double[ENDPOINTS.length];
+    double running = 0;
+    for (int i = 0; i < cumulative.length; i++) {
+      running += parsed.get(i);
+      cumulative[i] = running / sum;
+    }
+    return cumulative;
+  }
+
+  private static void parkUntil(long due) {
+    for (long now = System.nanoTime(); now < due; now = System.nanoTime()) {
+      LockSupport.parkNanos(due - now);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.TRACKS;
+import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
+import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tslic.discogs.Responses.Track;
+import tslic.discogs.Responses.TrackArtist;
+import tslic.discogs.tables.records.TrackArtistMapsRecord;
+import tslic.discogs.tables.records.TrackExtraArtistMapsRecord;
+import tslic.discogs.tables.records.TracksRecord;
+
+/**
+ * Record to DTO mapping of a fan-out release fetch, without a database. The rows are built in
+ * memory in the order the fan-out queries return them, sorted by release, track and offset. Run
+ * with the gc profiler ({@code -prof gc}) for the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+
+  /** Releases in one batch fetch. */
+  @Param({"1", "50"})
+  int releases;
+
+  @Param({"1", "20", "500"})
+  int tracksPerRelease;
+
+  @Param({"2"})
+  int artistsPerTrack;
+
+  @Param({"1"})
+  int extraArtistsPerTrack;
+
+  private Result<TracksRecord> tracks;
+  private Result<TrackArtistMapsRecord> trackArtists;
+  private Result<TrackExtraArtistMapsRecord> trackExtraArtists;
+
+  @Setup
+  public void setUp() {
+    var create = DSL.using(SQLDialect.POSTGRES);
+    tracks = create.newResult(TRACKS);
+    trackArtists = create.newResult(TRACK_ARTIST_MAPS);
+    trackExtraArtists = create.newResult(TRACK_EXTRA_ARTIST_MAPS);
+
+    for (int releaseId = 1; releaseId <= releases; releaseId++) {
+      for (int trackOfst = 0; trackOfst < tracksPerRelease; trackOfst++) {
+        var track = create.newRecord(TRACKS);
+        track.set(TRACKS.RELEASE_ID, releaseId);
+        track.set(TRACKS.OFST, trackOfst);
+        track.set(TRACKS.POSITION, "A" + (trackOfst + 1));
+        track.set(TRACKS.TITLE, "Track " + trackOfst);
+        track.set(TRACKS.DURATION, "4:05");
+        tracks.add(track);
+
+        for (int artistOfst = 0; artistOfst < artistsPerTrack; artistOfst++) {
+          var artist = create.newRecord(TRACK_ARTIST_MAPS);
+          artist.set(TRACK_ARTIST_MAPS.RELEASE_ID, releaseId);
+          artist.set(TRACK_ARTIST_MAPS.TRACK_OFST, trackOfst);
+          artist.set(TRACK_ARTIST_MAPS.ARTIST_OFST, artistOfst);
+          artist.set(TRACK_ARTIST_MAPS.ARTIST_ID, 1000 + artistOfst);
+          artist.set(TRACK_ARTIST_MAPS.NAME, "Artist " + artistOfst);
+          artist.set(TRACK_ARTIST_MAPS.JOIN_RELATION, "&");
+          trackArtists.add(artist);
+        }
+
+        for (int artistOfst = 0; artistOfst < extraArtistsPerTrack; artistOfst++) {
+          var artist = create.newRecord(TRACK_EXTRA_ARTIST_MAPS);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID, releaseId);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST, trackOfst);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.ARTIST_OFST, artistOfst);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.ARTIST_ID, 2000 + artistOfst);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.NAME, "Extra Artist " + artistOfst);
+          artist.set(TRACK_EXTRA_ARTIST_MAPS.ROLE, "Remix");
+          trackExtraArtists.add(artist);
+        }
+      }
+    }
+  }
+
+  /** Grouping of the rows of a release child table, here the track artists by release. */
+  @Benchmark
+  public Map<Integer, List<TrackArtist>> groupTrackArtists() {
+    return Repository.group(trackArtists, TRACK_ARTIST_MAPS.RELEASE_ID, Repository::toTrackArtist);
+  }
+
+  /** The whole tracklist assembly, track artists and credits merged into the tracks in one pass. */
+  @Benchmark
+  public Map<Integer, List<Track>> tracklists() {
+    return Repository.tracklists(tracks, trackArtists, trackExtraArtists);
+  }
+}
@@ -0,0 +1,124 @@
+package tslic.discogs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tslic.discogs.Responses.Release;
+import tslic.discogs.Responses.ReleaseArtist;
+import tslic.discogs.Responses.ReleaseExtraArtist;
+import tslic.discogs.Responses.ReleaseFormat;
+import tslic.discogs.Responses.ReleaseLabel;
+import tslic.discogs.Responses.Track;
+import tslic.discogs.Responses.TrackArtist;
+import tslic.discogs.Responses.TrackExtraArtist;
+import tslic.discogs.providers.ObjectMapperProvider;
+
+/**
+ * Serialization of releases with the object mapper of the service. A small release is a typical
+ * album, a huge one is shaped like the largest box sets and compilations of the dump.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+  @Param({"small", "huge"})
+  String size;
+
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+  private Release release;
+  private int id;
+
+  @Setup
+  public void setUp() {
+    release = "huge".equals(size) ? release(1_500, 3, 200) : release(12, 1, 4);
+  }
+
+  @Benchmark
+  public byte[] writeRelease() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(release);
+  }
+
+  @Benchmark
+  public URL createReleaseResourceUrl() {
+    return Responses.createReleaseResourceUrl(++id);
+  }
+
+  static Release release(int tracks, int artistsPerTrack, int extraArtists) {
+    var release = new Release();
+    release.setId(1);
+    release.setTitle("Release");
+    release.setCountry("UK");
+    release.setStatus("Accepted");
+    release.setDataQuality("Correct");
+    release.setReleased("1999-03-01");
+    release.setNotes("Recorded live. ".repeat(extraArtists));
+    release.setGenres(List.of("Electronic", "Rock"));
+    release.setStyles(List.of("House", "Disco"));
+
+    var artist = new ReleaseArtist();
+    artist.setId(1);
+    artist.setName("Artist");
+    release.setArtists(List.of(artist));
+
+    var label = new ReleaseLabel();
+    label.setId(1);
+    label.setName("Label");
+    label.setCatno("CAT 001");
+    release.setLabels(List.of(label));
+
+    var format = new ReleaseFormat();
+    format.setName("Vinyl");
+    format.setQty("1");
+    release.setFormats(List.of(format));
+
+    List<ReleaseExtraArtist> extraartists = new ArrayList<>();
+    for (int i = 0; i < extraArtists; i++) {
+      var extraArtist = new ReleaseExtraArtist();
+      extraArtist.setId(100 + i);
+      extraArtist.setName("Extra Artist " + i);
+      extraArtist.setRole("Producer");
+      extraArtist.setTracks("A1 to B" + i);
+      extraartists.add(extraArtist);
+    }
+    release.setExtraartists(extraartists);
+
+    List<Track> tracklist = new ArrayList<>();
+    for (int i = 0; i < tracks; i++) {
+      var track = new Track();
+      track.setPosition(String.valueOf(i + 1));
+      track.setTitle("Track " + i);
+      track.setDuration("4:05");
+
+      List<TrackArtist> trackArtists = new ArrayList<>();
+      for (int j = 0; j < artistsPerTrack; j++) {
+        var trackArtist = new TrackArtist();
+        trackArtist.setId(1_000 + i * artistsPerTrack + j);
+        trackArtist.setName("Track Artist " + j);
+        trackArtist.setJoin("&");
+        trackArtists.add(trackArtist);
+      }
+      track.setArtists(trackArtists);
+
+      var remixer = new TrackExtraArtist();
+      remixer.setId(2_000 + i);
+      remixer.setName("Remixer " + i);
+      remixer.setRole("Remix");
+      track.setExtraartists(List.of(remixer));
+      tracklist.add(track);
+    }
+    release.setTracklist(tracklist);
+    return release;
+  }
+}
@@ -0,0 +1,44 @@
+package tslic.discogs;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Zipf distributed ids from 1 to n, the k-th most popular one drawn with probability proportional
+ * to {@code 1 / k^exponent}. Popularity ranks are shuffled over the ids, so that popular entities
+ * are spread over the id range as in the dump rather than being the oldest ones.
+ */
+final class Zipf {
+
+  private final double[] cdf;
+  private final int[] idOfRank;
+
+  Zipf(int n, double exponent, Random random) {
+    cdf = new double[n];
+    double sum = 0;
+    for (int k = 1; k <= n; k++) {
+      sum += 1 / Math.pow(k, exponent);
+      cdf[k - 1] = sum;
+    }
+    for (int i = 0; i < n; i++) {
+      cdf[i] /= sum;
+    }
+
+    idOfRank = new int[n];
+    for (int i = 0; i < n; i++) {
+      idOfRank[i] = i + 1;
+    }
+    for (int i = n - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int id = idOfRank[i];
+      idOfRank[i] = idOfRank[j];
+      idOfRank[j] = id;
+    }
+  }
+
+  int next(Random random) {
+    int rank = Arrays.binarySearch(cdf, random.nextDouble());
+    rank = rank >= 0 ? rank : -rank - 1;
+    return idOfRank[Math.min(rank, idOfRank.length - 1)];
+  }
+}
@@ -0,0 +1,37 @@
+package tslic.discogs;
+
+import java.util.Locale;
+
+/**
+ * Service configuration read from system properties or else environment variables, falling back to
+ * defaults. Properties let benchmarks and tools configure a service started in-process.
+ */
+public class Config {
+
+  private Config() {}
+
+  public static String getString(String name, String defaultValue) {
+    String value = System.getProperty(name, System.getenv(name));
+    return value == null || value.isBlank() ? defaultValue : value.trim();
+  }
+
+  public static int getInt(String name, int defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  public static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+
+  public static boolean getBoolean(String name, boolean defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+
+  public static <E extends Enum<E>> E getEnum(String name, Class<E> type, E defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+  }
+}
@@ -0,0 +1,94 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.MASTERS;
+import static tslic.discogs.Tables.RELEASES;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.zip.CRC32;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import lombok.extern.log4j.Log4j2;
+import org.jooq.DSLContext;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+
+/**
+ * Version of the loaded Discogs dump. Every response is derived from the dump alone, so the
+ * version validates all of them: it is the basis of {@code ETag}s and its load time is their
+ * {@code Last-Modified}.
+ *
+ * <p>The version is {@code DUMP_VERSION}, else {@code DUMP_DATE}, else derived from the highest id
+ * of each entity table. Every node serving the same dump thus sends the same ETags, also across
+ * restarts, so that clients and CDNs can revalidate against any of them.
+ */
+@Log4j2
+@ApplicationScoped
+public class DumpVersion {
+
+  private final Provider<DSLContext> create;
+
+  private volatile String version;
+  private volatile Date lastModified;
+
+  @Inject
+  DumpVersion(Provider<DSLContext> dslContext) {
+    this.create = dslContext;
+    String dumpDate = Config.getString("DUMP_DATE", null);
+    update(
+        Config.getString("DUMP_VERSION", dumpDate),
+        dumpDate != null
+            ? LocalDate.parse(dumpDate).atStartOfDay(ZoneOffset.UTC).toInstant()
+            : Instant.now());
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public Date getLastModified() {
+    return lastModified;
+  }
+
+  /** Switches to a newly loaded dump, a {@code null} version is derived from the data. */
+  public void update(String version) {
+    update(version, Instant.now());
+  }
+
+  private synchronized void update(String version, Instant loadedAt) {
+    var lastModified = loadedAt.truncatedTo(ChronoUnit.SECONDS);
+    this.version = version != null ? version : fromData(lastModified);
+    this.lastModified = Date.from(lastModified);
+  }
+
+  /**
+   * A hash of the highest id of each entity table, which a new dump almost always changes. Falls
+   * back to the load time if the database cannot be queried.
+   */
+  private String fromData(Instant loadedAt) {
+    try {
+      var maxIds =
+          create
+              .get()
+              .select(
+                  DSL.field(DSL.select(DSL.max(ARTISTS.ID)).from(ARTISTS)),
+                  DSL.field(DSL.select(DSL.max(LABELS.ID)).from(LABELS)),
+                  DSL.field(DSL.select(DSL.max(MASTERS.ID)).from(MASTERS)),
+                  DSL.field(DSL.select(DSL.max(RELEASES.ID)).from(RELEASES)))
+              .fetchOne();
+      var crc = new CRC32();
+      crc.update(maxIds.intoList().toString().getBytes(StandardCharsets.UTF_8));
+      return Long.toString(crc.getValue(), 36);
+    } catch (DataAccessException e) {
+      log.warn("Could not derive the dump version from the data, set DUMP_VERSION", e);
+      return Long.toString(loadedAt.getEpochSecond(), 36);
+    }
+  }
+}
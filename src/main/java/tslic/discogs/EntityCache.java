@@ -0,0 +1,185 @@
+package tslic.discogs;
+
+import static java.util.stream.Collectors.toList;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import lombok.Value;
+import tslic.discogs.Responses.Artist;
+import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.Release;
+
+/**
+ * Response DTOs keyed by entity type and id. The dump does not change between imports, so entries
+ * never expire, they are only evicted when the cache outgrows {@code ENTITY_CACHE_MAX_BYTES} or
+ * invalidated after a new dump is loaded. Ids that do not exist are cached as well.
+ */
+@ApplicationScoped
+public class EntityCache {
+
+  private static final int MISSING_WEIGHT = 64;
+
+  /** An entity with its scalar fields and urls. */
+  private static final int ENTITY_WEIGHT = 1024;
+
+  /** An object in a collection of an entity, such as a track or a credit, with short texts. */
+  private static final int ELEMENT_WEIGHT = 192;
+
+  private final AsyncCache<Key, Optional<Object>> cache;
+
+  @Inject
+  EntityCache(MeterRegistry meterRegistry) {
+    long maxBytes = Config.getLong("ENTITY_CACHE_MAX_BYTES", 256L << 20);
+    if (maxBytes <= 0) {
+      cache = null;
+      return;
+    }
+
+    cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(EntityCache::weigh)
+            .recordStats()
+            .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "entities");
+  }
+
+  @SuppressWarnings("unchecked")
+  public <T> CompletionStage<T> get(
+      EntityType type, Integer id, Function<Integer, CompletionStage<T>> loader) {
+    if (cache == null) {
+      return loader.apply(id);
+    }
+
+    return cache
+        .get(
+            new Key(type, id),
+            (key, executor) ->
+                loader
+                    .apply(id)
+                    .thenApply(entity -> Optional.<Object>ofNullable(entity))
+                    .toCompletableFuture())
+        .thenApply(entity -> (T) entity.orElse(null));
+  }
+
+  /** Returns the entities that exist in the order of {@code ids}, fetching missed ids at once. */
+  @SuppressWarnings("unchecked")
+  public <T> CompletionStage<List<T>> getAll(
+      EntityType type,
+      List<Integer> ids,
+      Function<Collection<Integer>, CompletionStage<Map<Integer, T>>> batchLoader) {
+    if (cache == null) {
+      return batchLoader.apply(ids).thenApply(entities -> inOrder(ids, entities::get));
+    }
+
+    var keys = ids.stream().map(id -> new Key(type, id)).collect(toList());
+    return cache
+        .getAll(
+            keys,
+            (missedKeys, executor) -> {
+              List<Integer> missedIds = new ArrayList<>();
+              missedKeys.forEach(key -> missedIds.add(key.getId()));
+
+              return batchLoader
+                  .apply(missedIds)
+                  .thenApply(
+                      entities -> {
+                        Map<Key, Optional<Object>> loaded = new HashMap<>();
+                        for (Integer id : missedIds) {
+                          loaded.put(new Key(type, id), Optional.ofNullable(entities.get(id)));
+                        }
+                        return loaded;
+                      })
+                  .toCompletableFuture();
+            })
+        .thenApply(
+            entities -> inOrder(ids, id -> (T) entities.get(new Key(type, id)).orElse(null)));
+  }
+
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.synchronous().invalidateAll();
+    }
+  }
+
+  /**
+   * Estimates the retained size of an entity from the sizes of its collections and the lengths of
+   * its long texts, without serializing it. Every object of a collection counts as {@code
+   * ELEMENT_WEIGHT}, and texts count two bytes per char, as strings are stored as UTF-16.
+   */
+  private static int weigh(Key key, Optional<Object> entity) {
+    if (entity.isEmpty()) {
+      return MISSING_WEIGHT;
+    }
+
+    long weight = ENTITY_WEIGHT;
+    if (entity.get() instanceof Release) {
+      var release = (Release) entity.get();
+      weight +=
+          2L * (length(release.getTitle()) + length(release.getNotes()))
+              + ELEMENT_WEIGHT
+                  * (size(release.getArtists())
+                      + size(release.getExtraartists())
+                      + size(release.getCompanies())
+                      + size(release.getGenres())
+                      + size(release.getStyles())
+                      + size(release.getLabels())
+                      + size(release.getVideos())
+                      + size(release.getFormats()));
+      if (release.getTracklist() != null) {
+        for (var track : release.getTracklist()) {
+          weight +=
+              ELEMENT_WEIGHT * (1L + size(track.getArtists()) + size(track.getExtraartists()));
+        }
+      }
+    } else if (entity.get() instanceof Artist) {
+      var artist = (Artist) entity.get();
+      weight +=
+          2L * (length(artist.getProfile()) + length(artist.getRealname()))
+              + ELEMENT_WEIGHT
+                  * (size(artist.getNamevariations())
+                      + size(artist.getUrls())
+                      + size(artist.getAliases())
+                      + size(artist.getGroups())
+                      + size(artist.getMembers()));
+    } else if (entity.get() instanceof Label) {
+      var label = (Label) entity.get();
+      weight +=
+          2L * (length(label.getProfile()) + length(label.getContactInfo()))
+              + ELEMENT_WEIGHT * (size(label.getSublabels()) + size(label.getUrls()));
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  private static int size(Collection<?> collection) {
+    return collection != null ? collection.size() : 0;
+  }
+
+  private static int length(String text) {
+    return text != null ? text.length() : 0;
+  }
+
+  private static <T> List<T> inOrder(List<Integer> ids, Function<Integer, T> entities) {
+    return ids.stream().map(entities).filter(Objects::nonNull).collect(toList());
+  }
+
+  @Value
+  static class Key {
+
+    EntityType type;
+    int id;
+  }
+}
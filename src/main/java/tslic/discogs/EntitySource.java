@@ -0,0 +1,61 @@
+package tslic.discogs;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import tslic.discogs.Responses.Artist;
+import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.Master;
+import tslic.discogs.Responses.Release;
+
+/**
+ * Where single entities are looked up, the database by default. Fetch methods return the entities
+ * with the given ids keyed by id, missing ids have no entry.
+ */
+public interface EntitySource {
+
+  CompletionStage<Map<Integer, Artist>> fetchArtists(Collection<Integer> artistIds);
+
+  CompletionStage<Map<Integer, Release>> fetchReleases(Collection<Integer> releaseIds);
+
+  CompletionStage<Map<Integer, Label>> fetchLabels(Collection<Integer> labelIds);
+
+  CompletionStage<Map<Integer, Master>> fetchMasters(Collection<Integer> masterIds);
+
+  /** Where {@link EntitySource} lookups go, {@code ENTITY_SOURCE} selects the implementation. */
+  enum Kind {
+    /** {@link Repository}, querying PostgreSQL. */
+    DATABASE,
+    /** {@link SnapshotStore}, reading the memory-mapped {@code SNAPSHOT_FILE}. */
+    SNAPSHOT,
+    /** {@link ReactiveRepository}, querying PostgreSQL over a non-blocking client. */
+    REACTIVE
+  }
+
+  @ApplicationScoped
+  class EntitySourceProducer {
+
+    @Inject private Instance<Repository> repository;
+
+    @Inject private Instance<SnapshotStore> snapshotStore;
+
+    @Inject private Instance<ReactiveRepository> reactiveRepository;
+
+    @Produces
+    @ApplicationScoped
+    public EntitySource produce() {
+      switch (Config.getEnum("ENTITY_SOURCE", Kind.class, Kind.DATABASE)) {
+        case SNAPSHOT:
+          return snapshotStore.get();
+        case REACTIVE:
+          return reactiveRepository.get();
+        default:
+          return repository.get();
+      }
+    }
+  }
+}
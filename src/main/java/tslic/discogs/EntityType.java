@@ -0,0 +1,8 @@
+package tslic.discogs;
+
+public enum EntityType {
+  ARTIST,
+  RELEASE,
+  LABEL,
+  MASTER
+}
@@ -0,0 +1,113 @@
+package tslic.discogs;
+
+import java.util.Arrays;
+
+/**
+ * Map of int keys, such as entity ids, to non-negative long values, such as file offsets, without
+ * boxing. A {@code HashMap<Integer, Long>} spends about 80 bytes per entry on the Integer, the
+ * Long, the node and the table slot. {@link Dense} spends 8 bytes per key in the range of its
+ * keys, {@link OpenAddressing} 12 bytes per slot with at most every other slot used, so between
+ * 24 and 48 bytes per entry. {@link #of} picks the smaller one.
+ */
+@FunctionalInterface
+public interface IntLongIndex {
+
+  /** Value of absent keys. */
+  long MISSING = -1;
+
+  long get(int key);
+
+  /** An index of the keys and values at the same positions, keys must be distinct. */
+  static IntLongIndex of(int[] keys, long[] values) {
+    if (keys.length == 0) {
+      return key -> MISSING;
+    }
+
+    int min = Arrays.stream(keys).min().getAsInt();
+    int max = Arrays.stream(keys).max().getAsInt();
+    long denseBytes = 8L * ((long) max - min + 1);
+    long openAddressingBytes = 12L * OpenAddressing.capacity(keys.length);
+    return denseBytes <= openAddressingBytes
+        ? new Dense(min, max, keys, values)
+        : new OpenAddressing(keys, values);
+  }
+
+  /** Values in an array indexed by key minus the smallest key. */
+  final class Dense implements IntLongIndex {
+
+    private final int min;
+    private final long[] values;
+
+    Dense(int min, int max, int[] keys, long[] values) {
+      this.min = min;
+      this.values = new long[max - min + 1];
+      Arrays.fill(this.values, MISSING);
+      for (int i = 0; i < keys.length; i++) {
+        this.values[keys[i] - min] = values[i];
+      }
+    }
+
+    @Override
+    public long get(int key) {
+      int slot = key - min;
+      return slot >= 0 && slot < values.length ? values[slot] : MISSING;
+    }
+  }
+
+  /**
+   * Keys and values in parallel arrays of a power of two size, probed linearly from a Fibonacci
+   * hash of the key. {@link Integer#MIN_VALUE} marks empty slots and cannot be a key.
+   */
+  final class OpenAddressing implements IntLongIndex {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private final int[] keys;
+    private final long[] values;
+    private final int shift;
+
+    OpenAddressing(int[] keys, long[] values) {
+      int capacity = capacity(keys.length);
+      this.keys = new int[capacity];
+      this.values = new long[capacity];
+      this.shift = Integer.numberOfLeadingZeros(capacity) + 1;
+      Arrays.fill(this.keys, EMPTY);
+
+      int mask = capacity - 1;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == EMPTY) {
+          throw new IllegalArgumentException("Integer.MIN_VALUE cannot be a key");
+        }
+        int slot = slot(keys[i]);
+        while (this.keys[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = keys[i];
+        this.values[slot] = values[i];
+      }
+    }
+
+    /** Smallest power of two holding the entries at a load factor of at most one half. */
+    static int capacity(int size) {
+      return Math.max(2, Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1);
+    }
+
+    @Override
+    public long get(int key) {
+      int mask = keys.length - 1;
+      for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+        int candidate = keys[slot];
+        if (candidate == key) {
+          return values[slot];
+        }
+        if (candidate == EMPTY) {
+          return MISSING;
+        }
+      }
+    }
+
+    private int slot(int key) {
+      return (key * 0x9E3779B9) >>> shift;
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package tslic.discogs;
+
+import lombok.Value;
+
+/**
+ * A response body serialized ahead of time. {@link tslic.discogs.providers.JsonBytesWriter} copies
+ * the bytes to the response as they are, optionally in their pre-compressed form.
+ */
+@Value
+public class JsonBytes {
+
+  byte[] json;
+
+  /** {@code json} compressed with gzip, {@code null} if too small to be worth compressing. */
+  byte[] gzip;
+}
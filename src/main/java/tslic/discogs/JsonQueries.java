@@ -0,0 +1,313 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.ARTIST_ALIASES;
+import static tslic.discogs.Tables.ARTIST_GROUPS;
+import static tslic.discogs.Tables.ARTIST_MEMBERS;
+import static tslic.discogs.Tables.ARTIST_NAMEVARIATIONS;
+import static tslic.discogs.Tables.ARTIST_URLS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.LABEL_SUBLABELS;
+import static tslic.discogs.Tables.LABEL_URLS;
+import static tslic.discogs.Tables.RELEASES;
+import static tslic.discogs.Tables.RELEASE_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_COMPANIES;
+import static tslic.discogs.Tables.RELEASE_EXTRA_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_FORMATS;
+import static tslic.discogs.Tables.RELEASE_GENRES;
+import static tslic.discogs.Tables.RELEASE_LABELS;
+import static tslic.discogs.Tables.RELEASE_STYLES;
+import static tslic.discogs.Tables.RELEASE_VIDEOS;
+import static tslic.discogs.Tables.TRACKS;
+import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
+import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jooq.Condition;
+import org.jooq.Field;
+import org.jooq.QueryPart;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+/**
+ * PostgreSQL json expressions that return a whole entity graph as one json document per row. Keys
+ * are the snake_case property names of {@link Responses}, so a document can be read straight into
+ * the response DTO.
+ */
+class JsonQueries {
+
+  private JsonQueries() {}
+
+  /** The full {@link Responses.Artist} of the current {@code ARTISTS} row. */
+  static Field<String> artist() {
+    var nameVariations =
+        arrayAgg(
+            ARTIST_NAMEVARIATIONS.NAMEVARIATION,
+            ARTIST_NAMEVARIATIONS,
+            ARTIST_NAMEVARIATIONS.ARTIST_ID.eq(ARTISTS.ID),
+            ARTIST_NAMEVARIATIONS.OFST);
+
+    var urls =
+        arrayAgg(
+            ARTIST_URLS.URL, ARTIST_URLS, ARTIST_URLS.ARTIST_ID.eq(ARTISTS.ID), ARTIST_URLS.OFST);
+
+    var aliases =
+        arrayAgg(
+            object()
+                .put("id", ARTIST_ALIASES.ARTIST2_ID)
+                .put("name", ARTIST_ALIASES.NAME)
+                .build(),
+            ARTIST_ALIASES,
+            ARTIST_ALIASES.ARTIST_ID.eq(ARTISTS.ID),
+            ARTIST_ALIASES.OFST);
+
+    var groups =
+        arrayAgg(
+            object().put("id", ARTIST_GROUPS.ARTIST2_ID).put("name", ARTIST_GROUPS.NAME).build(),
+            ARTIST_GROUPS,
+            ARTIST_GROUPS.ARTIST_ID.eq(ARTISTS.ID),
+            ARTIST_GROUPS.OFST);
+
+    var members =
+        arrayAgg(
+            object().put("id", ARTIST_MEMBERS.ARTIST2_ID).put("name", ARTIST_MEMBERS.NAME).build(),
+            ARTIST_MEMBERS,
+            ARTIST_MEMBERS.ARTIST_ID.eq(ARTISTS.ID),
+            ARTIST_MEMBERS.OFST);
+
+    return object()
+        .put("id", ARTISTS.ID)
+        .put("name", ARTISTS.NAME)
+        .put("realname", ARTISTS.REAL_NAME)
+        .put("profile", ARTISTS.PROFILE)
+        .put("status", ARTISTS.STATUS)
+        .put("data_quality", ARTISTS.DATA_QUALITY)
+        .put("namevariations", nameVariations)
+        .put("urls", urls)
+        .put("aliases", aliases)
+        .put("groups", groups)
+        .put("members", members)
+        .build();
+  }
+
+  /** The full {@link Responses.Label} of the current {@code LABELS} row. */
+  static Field<String> label() {
+    var subLabels =
+        arrayAgg(
+            object().put("id", LABEL_SUBLABELS.LABEL2_ID).put("name", LABEL_SUBLABELS.NAME).build(),
+            LABEL_SUBLABELS,
+            LABEL_SUBLABELS.LABEL_ID.eq(LABELS.ID),
+            LABEL_SUBLABELS.OFST);
+
+    var urls =
+        arrayAgg(LABEL_URLS.URL, LABEL_URLS, LABEL_URLS.LABEL_ID.eq(LABELS.ID), LABEL_URLS.OFST);
+
+    return object()
+        .put("id", LABELS.ID)
+        .put("name", LABELS.NAME)
+        .put("profile", LABELS.PROFILE)
+        .put("data_quality", LABELS.DATA_QUALITY)
+        .put("contact_info", LABELS.CONTACT_INFO)
+        .put("sublabels", subLabels)
+        .put("urls", urls)
+        .build();
+  }
+
+  /** The full {@link Responses.Release} of the current {@code RELEASES} row. */
+  static Field<String> release() {
+    var genres =
+        arrayAgg(
+            RELEASE_GENRES.GENRE,
+            RELEASE_GENRES,
+            RELEASE_GENRES.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_GENRES.OFST);
+
+    var styles =
+        arrayAgg(
+            RELEASE_STYLES.STYLE,
+            RELEASE_STYLES,
+            RELEASE_STYLES.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_STYLES.OFST);
+
+    var videos =
+        arrayAgg(
+            object()
+                .put("url", RELEASE_VIDEOS.SRC)
+                .put("title", RELEASE_VIDEOS.TITLE)
+                .put("description", RELEASE_VIDEOS.DESCRIPTION)
+                .put("embed", RELEASE_VIDEOS.EMBED)
+                .put("duration", RELEASE_VIDEOS.DURATION)
+                .build(),
+            RELEASE_VIDEOS,
+            RELEASE_VIDEOS.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_VIDEOS.OFST);
+
+    var formats =
+        arrayAgg(
+            object()
+                .put("name", RELEASE_FORMATS.NAME)
+                .put("qty", RELEASE_FORMATS.QTY)
+                .put("text", RELEASE_FORMATS.TEXT)
+                .build(),
+            RELEASE_FORMATS,
+            RELEASE_FORMATS.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_FORMATS.OFST);
+
+    var companies =
+        arrayAgg(
+            object()
+                .put("id", RELEASE_COMPANIES.COMPANY_ID)
+                .put("name", RELEASE_COMPANIES.NAME)
+                .put("catno", RELEASE_COMPANIES.CATNO)
+                .put("entity_type", RELEASE_COMPANIES.ENTITY_TYPE)
+                .put("entity_type_name", RELEASE_COMPANIES.ENTITY_TYPE_NAME)
+                .build(),
+            RELEASE_COMPANIES,
+            RELEASE_COMPANIES.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_COMPANIES.OFST);
+
+    var labels =
+        arrayAgg(
+            object()
+                .put("id", RELEASE_LABELS.LABEL_ID)
+                .put("name", RELEASE_LABELS.NAME)
+                .put("catno", RELEASE_LABELS.CATNO)
+                .build(),
+            RELEASE_LABELS,
+            RELEASE_LABELS.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_LABELS.OFST);
+
+    var artists =
+        arrayAgg(
+            object()
+                .put("id", RELEASE_ARTIST_MAPS.ARTIST_ID)
+                .put("anv", RELEASE_ARTIST_MAPS.ANV)
+                .put("join", RELEASE_ARTIST_MAPS.JOIN_RELATION)
+                .put("name", RELEASE_ARTIST_MAPS.NAME)
+                .put("tracks", RELEASE_ARTIST_MAPS.TRACKS)
+                .build(),
+            RELEASE_ARTIST_MAPS,
+            RELEASE_ARTIST_MAPS.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_ARTIST_MAPS.OFST);
+
+    var extraArtists =
+        arrayAgg(
+            object()
+                .put("id", RELEASE_EXTRA_ARTIST_MAPS.ARTIST_ID)
+                .put("anv", RELEASE_EXTRA_ARTIST_MAPS.ANV)
+                .put("join", RELEASE_EXTRA_ARTIST_MAPS.JOIN_RELATION)
+                .put("name", RELEASE_EXTRA_ARTIST_MAPS.NAME)
+                .put("tracks", RELEASE_EXTRA_ARTIST_MAPS.TRACKS)
+                .put("role", RELEASE_EXTRA_ARTIST_MAPS.ROLE)
+                .build(),
+            RELEASE_EXTRA_ARTIST_MAPS,
+            RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID.eq(RELEASES.ID),
+            RELEASE_EXTRA_ARTIST_MAPS.OFST);
+
+    var tracks = arrayAgg(track(), TRACKS, TRACKS.RELEASE_ID.eq(RELEASES.ID), TRACKS.OFST);
+
+    return object()
+        .put("id", RELEASES.ID)
+        .put("country", RELEASES.COUNTRY)
+        .put("data_quality", RELEASES.DATA_QUALITY)
+        .put("master_id", RELEASES.MASTER_ID)
+        .put("notes", RELEASES.NOTES)
+        .put("released", RELEASES.RELEASED)
+        .put("status", RELEASES.STATUS)
+        .put("title", RELEASES.TITLE)
+        .put("genres", genres)
+        .put("styles", styles)
+        .put("videos", videos)
+        .put("formats", formats)
+        .put("companies", companies)
+        .put("labels", labels)
+        .put("artists", artists)
+        .put("extraartists", extraArtists)
+        .put("tracklist", tracks)
+        .build();
+  }
+
+  /** A {@link Responses.Track} of the current {@code TRACKS} row. */
+  private static Field<String> track() {
+    var artists =
+        arrayAgg(
+            object()
+                .put("id", TRACK_ARTIST_MAPS.ARTIST_ID)
+                .put("name", TRACK_ARTIST_MAPS.NAME)
+                .put("anv", TRACK_ARTIST_MAPS.ANV)
+                .put("join", TRACK_ARTIST_MAPS.JOIN_RELATION)
+                .build(),
+            TRACK_ARTIST_MAPS,
+            TRACK_ARTIST_MAPS
+                .RELEASE_ID
+                .eq(TRACKS.RELEASE_ID)
+                .and(TRACK_ARTIST_MAPS.TRACK_OFST.eq(TRACKS.OFST)),
+            TRACK_ARTIST_MAPS.ARTIST_OFST);
+
+    var extraArtists =
+        arrayAgg(
+            object()
+                .put("id", TRACK_EXTRA_ARTIST_MAPS.ARTIST_ID)
+                .put("name", TRACK_EXTRA_ARTIST_MAPS.NAME)
+                .put("anv", TRACK_EXTRA_ARTIST_MAPS.ANV)
+                .put("join", TRACK_EXTRA_ARTIST_MAPS.JOIN_RELATION)
+                .put("role", TRACK_EXTRA_ARTIST_MAPS.ROLE)
+                .build(),
+            TRACK_EXTRA_ARTIST_MAPS,
+            TRACK_EXTRA_ARTIST_MAPS
+                .RELEASE_ID
+                .eq(TRACKS.RELEASE_ID)
+                .and(TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST.eq(TRACKS.OFST)),
+            TRACK_EXTRA_ARTIST_MAPS.ARTIST_OFST);
+
+    return object()
+        .put("title", TRACKS.TITLE)
+        .put("duration", TRACKS.DURATION)
+        .put("position", TRACKS.POSITION)
+        .put("artists", artists)
+        .put("extraartists", extraArtists)
+        .build();
+  }
+
+  static JsonObject object() {
+    return new JsonObject();
+  }
+
+  /**
+   * A correlated subquery aggregating {@code element} of all matching rows of {@code table} into
+   * a json array. Evaluates to {@code null} when there are no rows, which is serialized the same
+   * way as an empty list.
+   */
+  static Field<String> arrayAgg(
+      Field<?> element, Table<?> table, Condition condition, Field<?> orderBy) {
+    return DSL.field(
+        "(select json_agg({0} order by {1}) from {2} where {3})",
+        String.class,
+        element,
+        orderBy,
+        table,
+        condition);
+  }
+
+  /** Builds {@code json_build_object(key1, value1, key2, value2, ...)}. */
+  static class JsonObject {
+
+    private final StringBuilder sql = new StringBuilder("json_build_object(");
+    private final List<QueryPart> parts = new ArrayList<>();
+
+    JsonObject put(String key, Field<?> value) {
+      if (!parts.isEmpty()) {
+        sql.append(", ");
+      }
+      sql.append('{').append(parts.size()).append("}, {").append(parts.size() + 1).append('}');
+      parts.add(DSL.inline(key));
+      parts.add(value);
+      return this;
+    }
+
+    Field<String> build() {
+      return DSL.field(sql + ")", String.class, parts.toArray(new QueryPart[0]));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import tslic.discogs.Responses.Artist;
+import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.Master;
+import tslic.discogs.Responses.Release;
+
+/** Single entity lookups of the {@link EntitySource}, coalesced by {@link BatchLoader}s. */
+@ApplicationScoped
+public class Loaders {
+
+  private final ScheduledExecutorService scheduler;
+  private final BatchLoader<Artist> artists;
+  private final BatchLoader<Release> releases;
+  private final BatchLoader<Label> labels;
+  private final BatchLoader<Master> masters;
+
+  @Inject
+  Loaders(EntitySource entitySource, MeterRegistry meterRegistry) {
+    long windowMicros = Config.getLong("LOADER_WINDOW_MICROS", 0);
+    int maxBatchSize = Config.getInt("LOADER_MAX_BATCH_SIZE", 100);
+
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "batch-loader");
+              thread.setDaemon(true);
+              return thread;
+            });
+
+    artists =
+        new BatchLoader<>(
+            "artist",
+            entitySource::fetchArtists,
+            scheduler,
+            windowMicros,
+            maxBatchSize,
+            meterRegistry);
+    releases =
+        new BatchLoader<>(
+            "release",
+            entitySource::fetchReleases,
+            scheduler,
+            windowMicros,
+            maxBatchSize,
+            meterRegistry);
+    labels =
+        new BatchLoader<>(
+            "label",
+            entitySource::fetchLabels,
+            scheduler,
+            windowMicros,
+            maxBatchSize,
+            meterRegistry);
+    masters =
+        new BatchLoader<>(
+            "master",
+            entitySource::fetchMasters,
+            scheduler,
+            windowMicros,
+            maxBatchSize,
+            meterRegistry);
+  }
+
+  public CompletionStage<Artist> artist(Integer artistId) {
+    return artists.load(artistId);
+  }
+
+  public CompletionStage<Release> release(Integer releaseId) {
+    return releases.load(releaseId);
+  }
+
+  public CompletionStage<Label> label(Integer labelId) {
+    return labels.load(labelId);
+  }
+
+  public CompletionStage<Master> master(Integer masterId) {
+    return masters.load(masterId);
+  }
+
+  @PreDestroy
+  public void destroy() {
+    scheduler.shutdownNow();
+  }
+}
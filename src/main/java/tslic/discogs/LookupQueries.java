@@ -0,0 +1,196 @@
+package tslic.discogs;
+
+import static tslic.discogs.QueryTemplate.idIn;
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.ARTIST_ALIASES;
+import static tslic.discogs.Tables.ARTIST_GROUPS;
+import static tslic.discogs.Tables.ARTIST_MEMBERS;
+import static tslic.discogs.Tables.ARTIST_NAMEVARIATIONS;
+import static tslic.discogs.Tables.ARTIST_URLS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.LABEL_SUBLABELS;
+import static tslic.discogs.Tables.LABEL_URLS;
+import static tslic.discogs.Tables.MASTERS;
+import static tslic.discogs.Tables.RELEASES;
+import static tslic.discogs.Tables.RELEASE_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_COMPANIES;
+import static tslic.discogs.Tables.RELEASE_EXTRA_ARTIST_MAPS;
+import static tslic.discogs.Tables.RELEASE_FORMATS;
+import static tslic.discogs.Tables.RELEASE_GENRES;
+import static tslic.discogs.Tables.RELEASE_LABELS;
+import static tslic.discogs.Tables.RELEASE_STYLES;
+import static tslic.discogs.Tables.RELEASE_VIDEOS;
+import static tslic.discogs.Tables.TRACKS;
+import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
+import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
+
+import org.jooq.Field;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+/**
+ * The entity lookups of {@link Repository}, rendered once as {@link QueryTemplate}s. Child tables
+ * are looked up by the id of their owner, in row order within each owner. Results are read into
+ * the records of the table with {@link org.jooq.Result#into(Table)}.
+ */
+class LookupQueries {
+
+  private LookupQueries() {}
+
+  static final QueryTemplate ARTISTS_BY_ID =
+      QueryTemplate.of(DSL.selectFrom(ARTISTS).where(idIn(ARTISTS.ID)));
+
+  static final QueryTemplate ARTIST_NAMEVARIATIONS_BY_ARTIST =
+      QueryTemplate.of(
+          DSL.select(ARTIST_NAMEVARIATIONS.ARTIST_ID, ARTIST_NAMEVARIATIONS.NAMEVARIATION)
+              .from(ARTIST_NAMEVARIATIONS)
+              .where(idIn(ARTIST_NAMEVARIATIONS.ARTIST_ID))
+              .orderBy(ARTIST_NAMEVARIATIONS.ARTIST_ID, ARTIST_NAMEVARIATIONS.OFST));
+
+  static final QueryTemplate ARTIST_URLS_BY_ARTIST =
+      QueryTemplate.of(
+          DSL.select(ARTIST_URLS.ARTIST_ID, ARTIST_URLS.URL)
+              .from(ARTIST_URLS)
+              .where(idIn(ARTIST_URLS.ARTIST_ID))
+              .orderBy(ARTIST_URLS.ARTIST_ID, ARTIST_URLS.OFST));
+
+  static final QueryTemplate ARTIST_ALIASES_BY_ARTIST =
+      QueryTemplate.of(
+          DSL.select(ARTIST_ALIASES.ARTIST_ID, ARTIST_ALIASES.ARTIST2_ID, ARTIST_ALIASES.NAME)
+              .from(ARTIST_ALIASES)
+              .where(idIn(ARTIST_ALIASES.ARTIST_ID))
+              .orderBy(ARTIST_ALIASES.ARTIST_ID, ARTIST_ALIASES.OFST));
+
+  static final QueryTemplate ARTIST_GROUPS_BY_ARTIST =
+      QueryTemplate.of(
+          DSL.select(ARTIST_GROUPS.ARTIST_ID, ARTIST_GROUPS.ARTIST2_ID, ARTIST_GROUPS.NAME)
+              .from(ARTIST_GROUPS)
+              .where(idIn(ARTIST_GROUPS.ARTIST_ID))
+              .orderBy(ARTIST_GROUPS.ARTIST_ID, ARTIST_GROUPS.OFST));
+
+  static final QueryTemplate ARTIST_MEMBERS_BY_ARTIST =
+      QueryTemplate.of(
+          DSL.select(ARTIST_MEMBERS.ARTIST_ID, ARTIST_MEMBERS.ARTIST2_ID, ARTIST_MEMBERS.NAME)
+              .from(ARTIST_MEMBERS)
+              .where(idIn(ARTIST_MEMBERS.ARTIST_ID))
+              .orderBy(ARTIST_MEMBERS.ARTIST_ID, ARTIST_MEMBERS.OFST));
+
+  static final QueryTemplate RELEASES_BY_ID =
+      QueryTemplate.of(DSL.selectFrom(RELEASES).where(idIn(RELEASES.ID)));
+
+  static final QueryTemplate RELEASE_GENRES_BY_RELEASE =
+      QueryTemplate.of(
+          DSL.select(RELEASE_GENRES.RELEASE_ID, RELEASE_GENRES.GENRE)
+              .from(RELEASE_GENRES)
+              .where(idIn(RELEASE_GENRES.RELEASE_ID))
+              .orderBy(RELEASE_GENRES.RELEASE_ID, RELEASE_GENRES.OFST));
+
+  static final QueryTemplate RELEASE_STYLES_BY_RELEASE =
+      QueryTemplate.of(
+          DSL.select(RELEASE_STYLES.RELEASE_ID, RELEASE_STYLES.STYLE)
+              .from(RELEASE_STYLES)
+              .where(idIn(RELEASE_STYLES.RELEASE_ID))
+              .orderBy(RELEASE_STYLES.RELEASE_ID, RELEASE_STYLES.OFST));
+
+  static final QueryTemplate RELEASE_VIDEOS_BY_RELEASE =
+      ofRelease(RELEASE_VIDEOS, RELEASE_VIDEOS.RELEASE_ID, RELEASE_VIDEOS.OFST);
+
+  static final QueryTemplate RELEASE_FORMATS_BY_RELEASE =
+      ofRelease(RELEASE_FORMATS, RELEASE_FORMATS.RELEASE_ID, RELEASE_FORMATS.OFST);
+
+  static final QueryTemplate RELEASE_COMPANIES_BY_RELEASE =
+      ofRelease(RELEASE_COMPANIES, RELEASE_COMPANIES.RELEASE_ID, RELEASE_COMPANIES.OFST);
+
+  static final QueryTemplate RELEASE_LABELS_BY_RELEASE =
+      ofRelease(RELEASE_LABELS, RELEASE_LABELS.RELEASE_ID, RELEASE_LABELS.OFST);
+
+  static final QueryTemplate RELEASE_ARTIST_MAPS_BY_RELEASE =
+      ofRelease(RELEASE_ARTIST_MAPS, RELEASE_ARTIST_MAPS.RELEASE_ID, RELEASE_ARTIST_MAPS.OFST);
+
+  static final QueryTemplate RELEASE_EXTRA_ARTIST_MAPS_BY_RELEASE =
+      ofRelease(
+          RELEASE_EXTRA_ARTIST_MAPS,
+          RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID,
+          RELEASE_EXTRA_ARTIST_MAPS.OFST);
+
+  /** Ordered by track as well, for the merge in {@link Repository#tracklists}. */
+  static final QueryTemplate TRACK_ARTIST_MAPS_BY_RELEASE =
+      QueryTemplate.of(
+          DSL.selectFrom(TRACK_ARTIST_MAPS)
+              .where(idIn(TRACK_ARTIST_MAPS.RELEASE_ID))
+              .orderBy(
+                  TRACK_ARTIST_MAPS.RELEASE_ID,
+                  TRACK_ARTIST_MAPS.TRACK_OFST,
+                  TRACK_ARTIST_MAPS.ARTIST_OFST));
+
+  /** Ordered by track as well, for the merge in {@link Repository#tracklists}. */
+  static final QueryTemplate TRACK_EXTRA_ARTIST_MAPS_BY_RELEASE =
+      QueryTemplate.of(
+          DSL.selectFrom(TRACK_EXTRA_ARTIST_MAPS)
+              .where(idIn(TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID))
+              .orderBy(
+                  TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID,
+                  TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST,
+                  TRACK_EXTRA_ARTIST_MAPS.ARTIST_OFST));
+
+  static final QueryTemplate TRACKS_BY_RELEASE = ofRelease(TRACKS, TRACKS.RELEASE_ID, TRACKS.OFST);
+
+  static final QueryTemplate TRACK_COUNT_BY_RELEASE =
+      QueryTemplate.of(DSL.selectCount().from(TRACKS).where(idIn(TRACKS.RELEASE_ID)));
+
+  /**
+   * A release and all of its child tables in one round trip, in the order the result sets are
+   * read by {@link Repository.FetchMode#PIPELINED}.
+   */
+  static final QueryTemplate RELEASES_WITH_CHILDREN_BY_ID =
+      QueryTemplate.concat(
+          RELEASES_BY_ID,
+          RELEASE_GENRES_BY_RELEASE,
+          RELEASE_STYLES_BY_RELEASE,
+          RELEASE_VIDEOS_BY_RELEASE,
+          RELEASE_FORMATS_BY_RELEASE,
+          RELEASE_COMPANIES_BY_RELEASE,
+          RELEASE_LABELS_BY_RELEASE,
+          RELEASE_ARTIST_MAPS_BY_RELEASE,
+          RELEASE_EXTRA_ARTIST_MAPS_BY_RELEASE,
+          TRACK_ARTIST_MAPS_BY_RELEASE,
+          TRACK_EXTRA_ARTIST_MAPS_BY_RELEASE,
+          TRACKS_BY_RELEASE);
+
+  static final QueryTemplate LABELS_BY_ID =
+      QueryTemplate.of(DSL.selectFrom(LABELS).where(idIn(LABELS.ID)));
+
+  static final QueryTemplate LABEL_SUBLABELS_BY_LABEL =
+      QueryTemplate.of(
+          DSL.select(LABEL_SUBLABELS.LABEL_ID, LABEL_SUBLABELS.LABEL2_ID, LABEL_SUBLABELS.NAME)
+              .from(LABEL_SUBLABELS)
+              .where(idIn(LABEL_SUBLABELS.LABEL_ID))
+              .orderBy(LABEL_SUBLABELS.LABEL_ID, LABEL_SUBLABELS.OFST));
+
+  static final QueryTemplate LABEL_URLS_BY_LABEL =
+      QueryTemplate.of(
+          DSL.select(LABEL_URLS.LABEL_ID, LABEL_URLS.URL)
+              .from(LABEL_URLS)
+              .where(idIn(LABEL_URLS.LABEL_ID))
+              .orderBy(LABEL_URLS.LABEL_ID, LABEL_URLS.OFST));
+
+  static final QueryTemplate MASTERS_BY_ID =
+      QueryTemplate.of(
+          DSL.select(MASTERS.ID, MASTERS.MAIN_RELEASE_ID).from(MASTERS).where(idIn(MASTERS.ID)));
+
+  static final QueryTemplate ARTIST_JSON_BY_ID = json(ARTISTS, ARTISTS.ID, JsonQueries.artist());
+
+  static final QueryTemplate RELEASE_JSON_BY_ID =
+      json(RELEASES, RELEASES.ID, JsonQueries.release());
+
+  static final QueryTemplate LABEL_JSON_BY_ID = json(LABELS, LABELS.ID, JsonQueries.label());
+
+  private static QueryTemplate ofRelease(Table<?> table, Field<Integer> releaseId, Field<?> ofst) {
+    return QueryTemplate.of(DSL.selectFrom(table).where(idIn(releaseId)).orderBy(releaseId, ofst));
+  }
+
+  /** The id and the json document built by one of the {@link JsonQueries} of each entity. */
+  private static QueryTemplate json(Table<?> table, Field<Integer> id, Field<String> json) {
+    return QueryTemplate.of(DSL.select(id, json).from(table).where(idIn(id)));
+  }
+}
@@ -1,5 +1,6 @@
 package tslic.discogs;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import java.io.IOException;
 import java.net.URI;
 import java.util.HashSet;
@@ -12,13 +13,22 @@ import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.jboss.weld.environment.se.Weld;
+import tslic.discogs.Resources.Admin;
 import tslic.discogs.Resources.Artists;
+import tslic.discogs.Resources.Exports;
 import tslic.discogs.Resources.Labels;
 import tslic.discogs.Resources.Masters;
+import tslic.discogs.Resources.Monitoring;
 import tslic.discogs.Resources.Releases;
+import tslic.discogs.Resources.Search;
+import tslic.discogs.providers.ConditionalRequestFilter;
 import tslic.discogs.providers.ConstraintExceptionMapper;
 import tslic.discogs.providers.CorsFilter;
+import tslic.discogs.providers.JsonBytesWriter;
 import tslic.discogs.providers.ObjectMapperProvider;
+import tslic.discogs.providers.RejectedExecutionExceptionMapper;
+import tslic.discogs.providers.RequestMetricsListener;
+import tslic.discogs.providers.RequestTraceListener;
 
 public class Main {
 
@@ -30,10 +40,11 @@ public class Main {
 
     try {
       Weld weld = new Weld();
-      weld.initialize();
+      var container = weld.initialize();
 
       ResourceConfig rc = ResourceConfig.forApplicationClass(DiscogsApplication.class);
       HttpServer server = GrizzlyHttpServerFactory.createHttpServer(baseUri, rc, false);
+      Metrics.monitor(server, container.select(MeterRegistry.class).get());
 
       Runtime.getRuntime()
           .addShutdownHook(
@@ -65,10 +76,19 @@ public class Main {
       classes.add(Releases.class);
       classes.add(Masters.class);
       classes.add(Labels.class);
+      classes.add(Search.class);
+      classes.add(Exports.class);
+      classes.add(Monitoring.class);
+      classes.add(Admin.class);
 
+      classes.add(ConditionalRequestFilter.class);
       classes.add(ConstraintExceptionMapper.class);
       classes.add(CorsFilter.class);
+      classes.add(JsonBytesWriter.class);
       classes.add(ObjectMapperProvider.class);
+      classes.add(RejectedExecutionExceptionMapper.class);
+      classes.add(RequestMetricsListener.class);
+      classes.add(RequestTraceListener.class);
 
       return classes;
     }
@@ -0,0 +1,154 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ClassLoaderMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.core.instrument.binder.system.UptimeMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Produces;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.threadpool.AbstractThreadPool;
+import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
+
+public class Metrics {
+
+  private Metrics() {}
+
+  /**
+   * Registers gauges of the worker threads of every listener of the server: busy threads against
+   * the maximum, and tasks waiting for a thread. Call before the server is started.
+   */
+  static void monitor(HttpServer server, MeterRegistry meterRegistry) {
+    for (var listener : server.getListeners()) {
+      var transport = listener.getTransport();
+      var probe = new WorkerPoolProbe();
+      transport.getThreadPoolMonitoringConfig().addProbes(probe);
+
+      var tags = Tags.of("listener", listener.getName());
+      Gauge.builder("grizzly.threads.busy", probe.busy, AtomicInteger::get)
+          .description("Worker threads running a task")
+          .tags(tags)
+          .register(meterRegistry);
+      Gauge.builder("grizzly.threads.current", probe.threads, AtomicInteger::get)
+          .description("Worker threads allocated")
+          .tags(tags)
+          .register(meterRegistry);
+      Gauge.builder(
+              "grizzly.threads.max",
+              transport,
+              t -> t.getWorkerThreadPoolConfig().getMaxPoolSize())
+          .description("Maximum number of worker threads")
+          .tags(tags)
+          .register(meterRegistry);
+      Gauge.builder("grizzly.tasks.queued", probe.queued, AtomicInteger::get)
+          .description("Tasks waiting for a worker thread")
+          .tags(tags)
+          .register(meterRegistry);
+      probe.rejected =
+          Counter.builder("grizzly.tasks.rejected")
+              .description("Tasks rejected because the worker queue was full")
+              .tags(tags)
+              .register(meterRegistry);
+    }
+  }
+
+  @ApplicationScoped
+  public static class MeterRegistryProducer {
+
+    private PrometheusMeterRegistry registry;
+    private JvmGcMetrics gcMetrics;
+
+    @PostConstruct
+    public void init() {
+      registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+      // publish histogram buckets for every timer and summary so that latency
+      // percentiles can be aggregated across instances on the Prometheus side
+      registry
+          .config()
+          .meterFilter(
+              new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(
+                    Meter.Id id, DistributionStatisticConfig config) {
+                  return DistributionStatisticConfig.builder()
+                      .percentilesHistogram(true)
+                      .build()
+                      .merge(config);
+                }
+              });
+
+      new ClassLoaderMetrics().bindTo(registry);
+      new JvmMemoryMetrics().bindTo(registry);
+      new JvmThreadMetrics().bindTo(registry);
+      new ProcessorMetrics().bindTo(registry);
+      new UptimeMetrics().bindTo(registry);
+      gcMetrics = new JvmGcMetrics();
+      gcMetrics.bindTo(registry);
+    }
+
+    @Produces
+    public PrometheusMeterRegistry produce() {
+      return registry;
+    }
+
+    @PreDestroy
+    public void destroy() {
+      gcMetrics.close();
+      registry.close();
+    }
+  }
+
+  private static class WorkerPoolProbe extends ThreadPoolProbe.Adapter {
+
+    final AtomicInteger busy = new AtomicInteger();
+    final AtomicInteger threads = new AtomicInteger();
+    final AtomicInteger queued = new AtomicInteger();
+    Counter rejected;
+
+    @Override
+    public void onThreadAllocateEvent(AbstractThreadPool threadPool, Thread thread) {
+      threads.incrementAndGet();
+    }
+
+    @Override
+    public void onThreadReleaseEvent(AbstractThreadPool threadPool, Thread thread) {
+      threads.decrementAndGet();
+    }
+
+    @Override
+    public void onTaskQueueEvent(AbstractThreadPool threadPool, Runnable task) {
+      queued.incrementAndGet();
+    }
+
+    @Override
+    public void onTaskDequeueEvent(AbstractThreadPool threadPool, Runnable task) {
+      queued.decrementAndGet();
+      busy.incrementAndGet();
+    }
+
+    @Override
+    public void onTaskCompleteEvent(AbstractThreadPool threadPool, Runnable task) {
+      busy.decrementAndGet();
+    }
+
+    @Override
+    public void onTaskQueueOverflowEvent(AbstractThreadPool threadPool) {
+      rejected.increment();
+    }
+  }
+}
@@ -0,0 +1,119 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.log4j.Log4j2;
+import org.jooq.ExecutorProvider;
+
+/**
+ * Runs blocking JDBC calls of {@code fetchAsync()} on dedicated threads instead of the common
+ * fork-join pool. At most {@code threads + queueSize} queries may be running or waiting, further
+ * queries are rejected with {@link RejectedExecutionException}.
+ */
+@Log4j2
+public class QueryExecutor implements ExecutorProvider, AutoCloseable {
+
+  private final int capacity;
+  private final Semaphore permits;
+  private final ExecutorService executorService;
+  private final ExecutorService monitoredExecutorService;
+  private final Counter rejections;
+
+  QueryExecutor(int threads, int queueSize, boolean virtualThreads, MeterRegistry meterRegistry) {
+    this.capacity = threads + queueSize;
+    this.permits = new Semaphore(capacity);
+    this.executorService =
+        virtualThreads ? newVirtualThreadExecutor(threads) : newPlatformThreadExecutor(threads);
+    this.monitoredExecutorService =
+        ExecutorServiceMetrics.monitor(meterRegistry, executorService, "db.query", Tags.empty());
+
+    Gauge.builder("db.query.pending", this, e -> e.capacity - e.permits.availablePermits())
+        .description("Queries running or waiting for a query thread")
+        .register(meterRegistry);
+    rejections =
+        Counter.builder("db.query.rejected")
+            .description("Queries rejected because the query queue was full")
+            .register(meterRegistry);
+  }
+
+  static QueryExecutor create(int poolSize, MeterRegistry meterRegistry) {
+    return new QueryExecutor(
+        Config.getInt("DB_EXECUTOR_THREADS", poolSize),
+        Config.getInt("DB_EXECUTOR_QUEUE_SIZE", 256),
+        Config.getBoolean("DB_EXECUTOR_VIRTUAL_THREADS", false),
+        meterRegistry);
+  }
+
+  @Override
+  public Executor provide() {
+    return this::execute;
+  }
+
+  private void execute(Runnable command) {
+    if (!permits.tryAcquire()) {
+      rejections.increment();
+      throw new RejectedExecutionException("Query queue is full");
+    }
+
+    try {
+      monitoredExecutorService.execute(
+          QueryTrace.propagate(
+              () -> {
+                try {
+                  command.run();
+                } finally {
+                  permits.release();
+                }
+              }));
+    } catch (RejectedExecutionException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static ExecutorService newPlatformThreadExecutor(int threads) {
+    AtomicInteger counter = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "db-query-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+    return Executors.newFixedThreadPool(threads, threadFactory);
+  }
+
+  /** Virtual threads are only available on JDK 21+, so they are looked up reflectively. */
+  private static ExecutorService newVirtualThreadExecutor(int fallbackThreads) {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      log.warn("Virtual threads are not supported by this JVM, using platform threads");
+      return newPlatformThreadExecutor(fallbackThreads);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+import org.postgresql.PGStatement;
+
+/**
+ * Times every statement from execution until its last row is fetched and counts the fetched rows,
+ * tagged with the first table the rendered SQL selects from outside of subqueries, {@code other}
+ * if there is none. Lazily fetched cursors are covered as well, since rows are counted as they are
+ * read.
+ *
+ * <p>Rendering the SQL and preparing the JDBC statement are timed separately, and statements are
+ * counted by whether the driver runs them as a server-side prepared statement, which PostgreSQL
+ * parses and plans once per connection. For a {@link QueryTemplate} rendering only binds values to
+ * SQL rendered at startup, and preparing is a hit in the driver's statement cache.
+ */
+public class QueryMetricsListener extends DefaultExecuteListener {
+
+  private static final Pattern FIRST_TABLE =
+      Pattern.compile("\\bfrom\\s+(?:\"?\\w+\"?\\.)?\"?(\\w+)\"?", Pattern.CASE_INSENSITIVE);
+
+  private static final String RENDER_START = "metrics.render.start";
+  private static final String PREPARE_START = "metrics.prepare.start";
+  private static final String START = "metrics.start";
+  private static final String ROWS = "metrics.rows";
+  private static final String TABLE = "metrics.table";
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<String, DistributionSummary> rowCounts = new ConcurrentHashMap<>();
+  private final Map<String, Timer> renderTimers = new ConcurrentHashMap<>();
+  private final Map<String, Timer> prepareTimers = new ConcurrentHashMap<>();
+  private final Map<String, Counter> serverPrepared = new ConcurrentHashMap<>();
+
+  QueryMetricsListener(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void renderStart(ExecuteContext ctx) {
+    ctx.data(RENDER_START, System.nanoTime());
+  }
+
+  @Override
+  public void renderEnd(ExecuteContext ctx) {
+    var start = (Long) ctx.data(RENDER_START);
+    if (start == null) {
+      return;
+    }
+
+    renderTimers
+        .computeIfAbsent(
+            table(ctx),
+            t ->
+                Timer.builder("db.query.render")
+                    .description("Rendering of statements to SQL")
+                    .tag("table", t)
+                    .register(meterRegistry))
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void prepareStart(ExecuteContext ctx) {
+    ctx.data(PREPARE_START, System.nanoTime());
+  }
+
+  @Override
+  public void prepareEnd(ExecuteContext ctx) {
+    var start = (Long) ctx.data(PREPARE_START);
+    if (start == null) {
+      return;
+    }
+
+    String table = table(ctx);
+    prepareTimers
+        .computeIfAbsent(
+            table,
+            t ->
+                Timer.builder("db.query.prepare")
+                    .description("Creation of JDBC statements")
+                    .tag("table", t)
+                    .register(meterRegistry))
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+    boolean prepared = isServerPrepared(ctx.statement());
+    serverPrepared
+        .computeIfAbsent(
+            table + prepared,
+            k ->
+                Counter.builder("db.query.server.prepared")
+                    .description("Statements by whether the server runs them prepared")
+                    .tag("table", table)
+                    .tag("prepared", String.valueOf(prepared))
+                    .register(meterRegistry))
+        .increment();
+  }
+
+  @Override
+  public void executeStart(ExecuteContext ctx) {
+    ctx.data(START, System.nanoTime());
+    ctx.data(ROWS, new long[1]);
+  }
+
+  @Override
+  public void recordEnd(ExecuteContext ctx) {
+    var rows = (long[]) ctx.data(ROWS);
+    if (rows != null) {
+      rows[0]++;
+    }
+  }
+
+  @Override
+  public void end(ExecuteContext ctx) {
+    var start = (Long) ctx.data(START);
+    if (start == null) {
+      return;
+    }
+
+    String table = table(ctx);
+    timers
+        .computeIfAbsent(
+            table,
+            t ->
+                Timer.builder("db.query")
+                    .description("Statements from execution until the last row is fetched")
+                    .tag("table", t)
+                    .register(meterRegistry))
+        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    rowCounts
+        .computeIfAbsent(
+            table,
+            t ->
+                DistributionSummary.builder("db.query.rows")
+                    .description("Rows fetched per statement")
+                    .tag("table", t)
+                    .register(meterRegistry))
+        .record(((long[]) ctx.data(ROWS))[0]);
+  }
+
+  /** Whether pgjdbc runs the statement as a named, server-side prepared statement. */
+  private static boolean isServerPrepared(Statement statement) {
+    try {
+      return statement != null
+          && statement.isWrapperFor(PGStatement.class)
+          && statement.unwrap(PGStatement.class).isUseServerPrepare();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
+  /** The table of the statement, found once per execution. */
+  static String table(ExecuteContext ctx) {
+    var table = (String) ctx.data(TABLE);
+    if (table == null && ctx.sql() != null) {
+      table = table(ctx.sql());
+      ctx.data(TABLE, table);
+    }
+    return table != null ? table : "other";
+  }
+
+  /**
+   * The first table selected from outside of parentheses and string literals, so that tables of
+   * subqueries, such as those of the {@link JsonQueries}, are not taken for the statement's own.
+   */
+  static String table(String sql) {
+    var matcher = FIRST_TABLE.matcher(sql);
+    int depth = 0;
+    boolean quoted = false;
+    int position = 0;
+    while (matcher.find()) {
+      for (; position < matcher.start(); position++) {
+        char c = sql.charAt(position);
+        if (c == '\'') {
+          quoted = !quoted;
+        } else if (!quoted && c == '(') {
+          depth++;
+        } else if (!quoted && c == ')') {
+          depth--;
+        }
+      }
+      if (depth == 0 && !quoted) {
+        return matcher.group(1).toLowerCase(Locale.ROOT);
+      }
+    }
+    return "other";
+  }
+}
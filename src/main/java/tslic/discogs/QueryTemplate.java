@@ -0,0 +1,80 @@
+package tslic.discogs;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.stream.Collectors;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.Results;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+
+/**
+ * A lookup by ids rendered to SQL once, when the class defining it is initialized. Running it only
+ * binds the ids, so no query tree is built or rendered per request. The ids are bound as a single
+ * array, so the SQL text is the same for any number of ids and the driver keeps one server-side
+ * prepared statement of it per connection.
+ */
+final class QueryTemplate {
+
+  private static final Field<Integer[]> IDS = DSL.param("ids", Integer[].class);
+
+  private final String sql;
+  private final int bindCount;
+
+  private QueryTemplate(String sql, int bindCount) {
+    this.sql = sql;
+    this.bindCount = bindCount;
+  }
+
+  /** {@code id = any(?)}, bound to the ids the template is run with. */
+  static Condition idIn(Field<Integer> id) {
+    return id.eq(DSL.any(IDS));
+  }
+
+  /** The query, which may only have {@link #idIn} conditions as bind values. */
+  static QueryTemplate of(ResultQuery<?> query) {
+    return new QueryTemplate(
+        DSL.using(SQLDialect.POSTGRES).render(query), query.getBindValues().size());
+  }
+
+  /** The templates as one multi-statement query, see {@link #fetchManyAsync}. */
+  static QueryTemplate concat(QueryTemplate... templates) {
+    return new QueryTemplate(
+        Arrays.stream(templates).map(t -> t.sql).collect(Collectors.joining(";\n")),
+        Arrays.stream(templates).mapToInt(t -> t.bindCount).sum());
+  }
+
+  CompletionStage<Result<Record>> fetchAsync(DSLContext create, Collection<Integer> ids) {
+    return create.resultQuery(sql, bindValues(ids)).fetchAsync();
+  }
+
+  /** Runs the template and reads the rows into records of the table they were selected from. */
+  <R extends Record> CompletionStage<Result<R>> fetchAsync(
+      DSLContext create, Table<R> table, Collection<Integer> ids) {
+    return fetchAsync(create, ids).thenApply(rs -> rs.into(table));
+  }
+
+  /**
+   * Runs a multi-statement template in one round trip on a query thread. The driver sends every
+   * statement before it reads the first result, and the result sets come back in statement order.
+   */
+  CompletionStage<Results> fetchManyAsync(DSLContext create, Collection<Integer> ids) {
+    var query = create.resultQuery(sql, bindValues(ids));
+    return CompletableFuture.supplyAsync(
+        query::fetchMany, create.configuration().executorProvider().provide());
+  }
+
+  private Object[] bindValues(Collection<Integer> ids) {
+    var values = new Object[bindCount];
+    Arrays.fill(values, ids.toArray(new Integer[0]));
+    return values;
+  }
+}
@@ -0,0 +1,105 @@
+package tslic.discogs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import lombok.Value;
+
+/**
+ * Statements run on behalf of one request. The trace is attached to the request thread while the
+ * resource method runs, and {@link QueryExecutor} carries it over to the query threads, together
+ * with the time each query waited for a thread. Queries of a batch dispatched later by a {@link
+ * BatchLoader} window serve several requests and are not traced. Bind values are only recorded if
+ * the trace asks for them.
+ */
+public class QueryTrace {
+
+  private static final ThreadLocal<QueryTrace> CURRENT = new ThreadLocal<>();
+  private static final ThreadLocal<Long> QUEUED_NANOS = new ThreadLocal<>();
+
+  private final boolean bindValues;
+  private final Queue<Query> queries = new ConcurrentLinkedQueue<>();
+
+  public QueryTrace(boolean bindValues) {
+    this.bindValues = bindValues;
+  }
+
+  @Value
+  public static class Query {
+
+    String table;
+    List<Object> bindValues;
+    long rows;
+    double queuedMs;
+    double executionMs;
+  }
+
+  public static void attach(QueryTrace trace) {
+    CURRENT.set(trace);
+  }
+
+  public static void detach() {
+    CURRENT.remove();
+  }
+
+  static QueryTrace current() {
+    return CURRENT.get();
+  }
+
+  /** The command run with the trace of the submitting thread, if there is one. */
+  static Runnable propagate(Runnable command) {
+    var trace = CURRENT.get();
+    if (trace == null) {
+      return command;
+    }
+
+    long submitted = System.nanoTime();
+    return () -> {
+      CURRENT.set(trace);
+      QUEUED_NANOS.set(System.nanoTime() - submitted);
+      try {
+        command.run();
+      } finally {
+        CURRENT.remove();
+        QUEUED_NANOS.remove();
+      }
+    };
+  }
+
+  /** How long the query about to run waited for its thread, only reported once. */
+  static long takeQueuedNanos() {
+    Long queued = QUEUED_NANOS.get();
+    QUEUED_NANOS.remove();
+    return queued == null ? 0 : queued;
+  }
+
+  public boolean hasBindValues() {
+    return bindValues;
+  }
+
+  void add(Query query) {
+    queries.add(query);
+  }
+
+  public List<Query> getQueries() {
+    return new ArrayList<>(queries);
+  }
+
+  /** The queries as a {@code Server-Timing} header value, one metric named after each table. */
+  public String toServerTiming() {
+    return queries.stream()
+        .map(
+            q ->
+                String.format(
+                    Locale.ROOT,
+                    "%s;dur=%.3f;desc=\"%d rows, %.3f ms queued\"",
+                    q.getTable(),
+                    q.getExecutionMs(),
+                    q.getRows(),
+                    q.getQueuedMs()))
+        .collect(Collectors.joining(", "));
+  }
+}
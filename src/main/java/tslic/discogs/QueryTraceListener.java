@@ -0,0 +1,94 @@
+package tslic.discogs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import lombok.extern.log4j.Log4j2;
+import org.jooq.ExecuteContext;
+import org.jooq.impl.DefaultExecuteListener;
+
+/**
+ * Adds every statement to the {@link QueryTrace} of the request it runs for, and logs statements
+ * slower than {@code SLOW_QUERY_MS} with their bind values at {@code WARN}. Array bind values,
+ * such as the ids of a {@link QueryTemplate}, are logged by their elements. Bind values are only
+ * copied for slow statements and traces that ask for them.
+ */
+@Log4j2
+public class QueryTraceListener extends DefaultExecuteListener {
+
+  private static final String START = "trace.start";
+  private static final String QUEUED = "trace.queued";
+  private static final String ROWS = "trace.rows";
+
+  private final long slowQueryNanos = Config.getLong("SLOW_QUERY_MS", 1000) * 1_000_000;
+
+  @Override
+  public void executeStart(ExecuteContext ctx) {
+    if (QueryTrace.current() == null && slowQueryNanos <= 0) {
+      return;
+    }
+    ctx.data(START, System.nanoTime());
+    ctx.data(QUEUED, QueryTrace.takeQueuedNanos());
+    ctx.data(ROWS, new long[1]);
+  }
+
+  @Override
+  public void recordEnd(ExecuteContext ctx) {
+    var rows = (long[]) ctx.data(ROWS);
+    if (rows != null) {
+      rows[0]++;
+    }
+  }
+
+  @Override
+  public void end(ExecuteContext ctx) {
+    var start = (Long) ctx.data(START);
+    if (start == null) {
+      return;
+    }
+
+    long executionNanos = System.nanoTime() - start;
+    long rows = ((long[]) ctx.data(ROWS))[0];
+    String table = QueryMetricsListener.table(ctx);
+    var trace = QueryTrace.current();
+    boolean slow = slowQueryNanos > 0 && executionNanos >= slowQueryNanos;
+    List<Object> bindValues =
+        slow || trace != null && trace.hasBindValues() ? bindValues(ctx) : List.of();
+
+    if (trace != null) {
+      trace.add(
+          new QueryTrace.Query(
+              table, bindValues, rows, (Long) ctx.data(QUEUED) / 1e6, executionNanos / 1e6));
+    }
+    if (slow) {
+      log.warn(
+          "Slow query on {} took {} ms for {} rows, bind values {}: {}",
+          table,
+          executionNanos / 1_000_000,
+          rows,
+          Arrays.deepToString(bindValues.toArray()),
+          ctx.sql());
+    }
+  }
+
+  /**
+   * The bind values of the statement, with an array repeated right after itself listed once. A
+   * multi-statement {@link QueryTemplate} binds the same ids to each of its statements.
+   */
+  private static List<Object> bindValues(ExecuteContext ctx) {
+    if (ctx.query() == null) {
+      return List.of();
+    }
+
+    var bindValues = new ArrayList<>();
+    for (var value : ctx.query().getBindValues()) {
+      if (!(value instanceof Object[])
+          || bindValues.isEmpty()
+          || !Objects.deepEquals(value, bindValues.get(bindValues.size() - 1))) {
+        bindValues.add(value);
+      }
+    }
+    return bindValues;
+  }
+}
@@ -0,0 +1,169 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.MASTERS;
+import static tslic.discogs.Tables.RELEASES;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
+import lombok.extern.log4j.Log4j2;
+import org.jooq.Field;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.conf.ParamType;
+import org.jooq.impl.DSL;
+import tslic.discogs.Responses.Artist;
+import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.Master;
+import tslic.discogs.Responses.Release;
+import tslic.discogs.providers.ObjectMapperProvider;
+
+/**
+ * Entity lookups over the non-blocking Vert.x PostgreSQL client instead of JDBC. A batch is one
+ * statement built by {@link JsonQueries}, as in {@link Repository.FetchMode#AGGREGATE}, and read
+ * into the same DTOs. No thread waits for the database: {@code REACTIVE_EVENT_LOOPS} threads
+ * drive all connections, and each connection pipelines up to {@code REACTIVE_PIPELINING_LIMIT}
+ * statements without waiting for the previous result.
+ *
+ * <p>Rows are decoded into DTOs on the common fork-join pool, so that slow json parsing or a
+ * response written to a slow client never blocks an event loop.
+ */
+@Log4j2
+@ApplicationScoped
+@Typed(ReactiveRepository.class)
+public class ReactiveRepository implements EntitySource {
+
+  private static final String ARTISTS_BY_IDS = byIds(ARTISTS, ARTISTS.ID, JsonQueries.artist());
+  private static final String RELEASES_BY_IDS =
+      byIds(RELEASES, RELEASES.ID, JsonQueries.release());
+  private static final String LABELS_BY_IDS = byIds(LABELS, LABELS.ID, JsonQueries.label());
+  private static final String MASTERS_BY_IDS =
+      byIds(
+          MASTERS,
+          MASTERS.ID,
+          JsonQueries.object()
+              .put("id", MASTERS.ID)
+              .put("main_release_id", MASTERS.MAIN_RELEASE_ID)
+              .build());
+
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+  private Vertx vertx;
+  private PgPool pool;
+
+  /**
+   * Statements running or waiting for a connection. Beyond {@code REACTIVE_QUEUE_SIZE} waiting ones
+   * they are rejected as a full {@link QueryExecutor} would be.
+   */
+  private Semaphore statements;
+
+  @PostConstruct
+  public void init() {
+    // the JDBC url of the service, jdbc:postgresql://host:port/database
+    var uri = Config.getString("DB_URL", null);
+    if (uri == null) {
+      throw new IllegalStateException("DB_URL is not set");
+    }
+    var connectOptions =
+        PgConnectOptions.fromUri(uri.replaceFirst("^jdbc:", ""))
+            .setUser(Config.getString("DB_USER", null))
+            .setPassword(Config.getString("DB_PASSWORD", null))
+            .setCachePreparedStatements(true)
+            .setPipeliningLimit(Config.getInt("REACTIVE_PIPELINING_LIMIT", 256));
+    int maxSize = Config.getInt("REACTIVE_POOL_MAX_SIZE", 4);
+    statements = new Semaphore(maxSize + Config.getInt("REACTIVE_QUEUE_SIZE", 256));
+    // the wait queue of the pool is bounded by the statements semaphore
+    var poolOptions = new PoolOptions().setMaxSize(maxSize).setMaxWaitQueueSize(-1);
+
+    vertx =
+        Vertx.vertx(
+            new VertxOptions().setEventLoopPoolSize(Config.getInt("REACTIVE_EVENT_LOOPS", 2)));
+    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    log.info("Serving entities over the reactive PostgreSQL client");
+  }
+
+  @PreDestroy
+  public void destroy() {
+    pool.close();
+    vertx.close();
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Artist>> fetchArtists(Collection<Integer> artistIds) {
+    return fetch(ARTISTS_BY_IDS, artistIds, Artist.class);
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Release>> fetchReleases(Collection<Integer> releaseIds) {
+    return fetch(RELEASES_BY_IDS, releaseIds, Release.class);
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Label>> fetchLabels(Collection<Integer> labelIds) {
+    return fetch(LABELS_BY_IDS, labelIds, Label.class);
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Master>> fetchMasters(Collection<Integer> masterIds) {
+    return fetch(MASTERS_BY_IDS, masterIds, Master.class);
+  }
+
+  private <T> CompletionStage<Map<Integer, T>> fetch(
+      String sql, Collection<Integer> ids, Class<T> type) {
+    if (!statements.tryAcquire()) {
+      return CompletableFuture.failedFuture(
+          new RejectedExecutionException("Reactive pool queue is full"));
+    }
+
+    return pool.preparedQuery(sql)
+        .execute(Tuple.of(ids.toArray(new Integer[0])))
+        .onComplete(result -> statements.release())
+        .toCompletionStage()
+        .thenApplyAsync(rows -> read(rows, type), ForkJoinPool.commonPool());
+  }
+
+  private <T> Map<Integer, T> read(RowSet<Row> rows, Class<T> type) {
+    Map<Integer, T> entities = new HashMap<>();
+    for (var row : rows) {
+      try {
+        entities.put(row.getInteger(0), objectMapper.readValue(row.getString(1), type));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return entities;
+  }
+
+  /**
+   * Renders {@code select id, json::text from table where id = any($1)} once. The client decodes
+   * {@code json} columns into its own objects, as text they go straight to Jackson.
+   */
+  private static String byIds(Table<?> table, Field<Integer> id, Field<String> json) {
+    return DSL.using(SQLDialect.POSTGRES)
+        .select(id, DSL.field("{0}::text", String.class, json))
+        .from(table)
+        .where(DSL.condition("{0} = any($1)", id))
+        .getSQL(ParamType.INLINED);
+  }
+}
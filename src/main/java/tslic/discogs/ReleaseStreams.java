@@ -0,0 +1,94 @@
+package tslic.discogs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Releases with at least {@code RELEASE_STREAMING_MIN_TRACKS} tracks, which are written straight
+ * from the database instead of through the caches. Streams run on threads of their own, at most
+ * {@code RELEASE_STREAMING_MAX_CONCURRENCY} at a time, so that a slow client holds neither a query
+ * thread nor more than that many pooled connections. Further streams are rejected with {@link
+ * RejectedExecutionException}. Releases found to be huge are remembered until the caches are
+ * invalidated, so their tracks are counted once. They are rare, so a boxed set of them stays small,
+ * and looking up an id that is already boxed allocates nothing.
+ */
+@ApplicationScoped
+public class ReleaseStreams {
+
+  private final int minTracks;
+  private final Set<Integer> hugeReleases = ConcurrentHashMap.newKeySet();
+  private final ThreadPoolExecutor executorService;
+  private final ExecutorService monitoredExecutorService;
+
+  @Inject
+  ReleaseStreams(MeterRegistry meterRegistry) {
+    this.minTracks = Config.getInt("RELEASE_STREAMING_MIN_TRACKS", 0);
+    int maxConcurrency = Config.getInt("RELEASE_STREAMING_MAX_CONCURRENCY", 4);
+
+    AtomicInteger counter = new AtomicInteger();
+    executorService =
+        new ThreadPoolExecutor(
+            maxConcurrency,
+            maxConcurrency,
+            60,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "release-stream-" + counter.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    executorService.allowCoreThreadTimeOut(true);
+    monitoredExecutorService =
+        ExecutorServiceMetrics.monitor(
+            meterRegistry, executorService, "release.stream", Tags.empty());
+  }
+
+  public boolean isEnabled() {
+    return minTracks > 0;
+  }
+
+  public boolean isHuge(Integer releaseId) {
+    return hugeReleases.contains(releaseId);
+  }
+
+  /** Whether a release with this many tracks is streamed, remembering it if so. */
+  public boolean isHuge(Integer releaseId, int tracks) {
+    if (tracks < minTracks) {
+      return false;
+    }
+
+    hugeReleases.add(releaseId);
+    return true;
+  }
+
+  /** Runs the stream on a stream thread, or throws if all of them are busy. */
+  public void execute(Runnable stream) {
+    try {
+      monitoredExecutorService.execute(stream);
+    } catch (RejectedExecutionException e) {
+      throw new RejectedExecutionException("Too many release streams");
+    }
+  }
+
+  public void invalidateAll() {
+    hugeReleases.clear();
+  }
+
+  @PreDestroy
+  public void destroy() {
+    executorService.shutdownNow();
+  }
+}
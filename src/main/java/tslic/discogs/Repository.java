@@ -1,8 +1,33 @@
 package tslic.discogs;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static tslic.discogs.LookupQueries.ARTISTS_BY_ID;
+import static tslic.discogs.LookupQueries.ARTIST_ALIASES_BY_ARTIST;
+import static tslic.discogs.LookupQueries.ARTIST_GROUPS_BY_ARTIST;
+import static tslic.discogs.LookupQueries.ARTIST_JSON_BY_ID;
+import static tslic.discogs.LookupQueries.ARTIST_MEMBERS_BY_ARTIST;
+import static tslic.discogs.LookupQueries.ARTIST_NAMEVARIATIONS_BY_ARTIST;
+import static tslic.discogs.LookupQueries.ARTIST_URLS_BY_ARTIST;
+import static tslic.discogs.LookupQueries.LABELS_BY_ID;
+import static tslic.discogs.LookupQueries.LABEL_JSON_BY_ID;
+import static tslic.discogs.LookupQueries.LABEL_SUBLABELS_BY_LABEL;
+import static tslic.discogs.LookupQueries.LABEL_URLS_BY_LABEL;
+import static tslic.discogs.LookupQueries.MASTERS_BY_ID;
+import static tslic.discogs.LookupQueries.RELEASES_BY_ID;
+import static tslic.discogs.LookupQueries.RELEASES_WITH_CHILDREN_BY_ID;
+import static tslic.discogs.LookupQueries.RELEASE_ARTIST_MAPS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_COMPANIES_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_EXTRA_ARTIST_MAPS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_FORMATS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_GENRES_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_JSON_BY_ID;
+import static tslic.discogs.LookupQueries.RELEASE_LABELS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_STYLES_BY_RELEASE;
+import static tslic.discogs.LookupQueries.RELEASE_VIDEOS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.TRACKS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.TRACK_ARTIST_MAPS_BY_RELEASE;
+import static tslic.discogs.LookupQueries.TRACK_COUNT_BY_RELEASE;
+import static tslic.discogs.LookupQueries.TRACK_EXTRA_ARTIST_MAPS_BY_RELEASE;
 import static tslic.discogs.Tables.ARTISTS;
 import static tslic.discogs.Tables.ARTIST_ALIASES;
 import static tslic.discogs.Tables.ARTIST_GROUPS;
@@ -26,26 +51,71 @@ import static tslic.discogs.Tables.TRACKS;
 import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
 import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
+import javax.enterprise.inject.Typed;
 import javax.inject.Inject;
+import lombok.Value;
+import org.jooq.Condition;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.Record2;
+import org.jooq.Record3;
+import org.jooq.Result;
+import org.jooq.ResultQuery;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.SelectLimitStep;
+import org.jooq.Table;
+import org.jooq.TableLike;
 import org.jooq.impl.DSL;
+import org.jooq.impl.DefaultConfiguration;
+import org.jooq.impl.DefaultExecuteListenerProvider;
+import tslic.discogs.Requests.PageRequest;
+import tslic.discogs.Requests.SearchRequest;
 import tslic.discogs.Responses.Artist;
 import tslic.discogs.Responses.ArtistAlias;
+import tslic.discogs.Responses.ArtistAssoc;
 import tslic.discogs.Responses.ArtistAssocsPaginated;
+import tslic.discogs.Responses.ArtistReleaseAssoc;
 import tslic.discogs.Responses.Group;
 import tslic.discogs.Responses.GroupMember;
 import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.LabelRelease;
+import tslic.discogs.Responses.LabelReleasesPaginated;
 import tslic.discogs.Responses.Master;
+import tslic.discogs.Responses.MasterVersion;
 import tslic.discogs.Responses.MasterVersionsPaginated;
+import tslic.discogs.Responses.Pagination;
+import tslic.discogs.Responses.PaginationUrls;
 import tslic.discogs.Responses.Release;
 import tslic.discogs.Responses.ReleaseArtist;
 import tslic.discogs.Responses.ReleaseCompany;
@@ -53,511 +123,1704 @@ import tslic.discogs.Responses.ReleaseExtraArtist;
 import tslic.discogs.Responses.ReleaseFormat;
 import tslic.discogs.Responses.ReleaseLabel;
 import tslic.discogs.Responses.ReleaseVideo;
+import tslic.discogs.Responses.SearchResult;
+import tslic.discogs.Responses.SearchResultsPaginated;
 import tslic.discogs.Responses.SubLabel;
 import tslic.discogs.Responses.Track;
 import tslic.discogs.Responses.TrackArtist;
 import tslic.discogs.Responses.TrackExtraArtist;
+import tslic.discogs.providers.ObjectMapperProvider;
+import tslic.discogs.tables.records.ReleaseArtistMapsRecord;
+import tslic.discogs.tables.records.ReleaseCompaniesRecord;
+import tslic.discogs.tables.records.ReleaseExtraArtistMapsRecord;
+import tslic.discogs.tables.records.ReleaseFormatsRecord;
+import tslic.discogs.tables.records.ReleaseLabelsRecord;
+import tslic.discogs.tables.records.ReleaseVideosRecord;
+import tslic.discogs.tables.records.ReleasesRecord;
 import tslic.discogs.tables.records.TrackArtistMapsRecord;
 import tslic.discogs.tables.records.TrackExtraArtistMapsRecord;
+import tslic.discogs.tables.records.TracksRecord;
 
 @ApplicationScoped
-public class Repository {
+@Typed(Repository.class)
+public class Repository implements EntitySource {
+
+  /** Rows fetched per round trip when streaming a listing from a server-side cursor. */
+  private static final int STREAM_FETCH_SIZE = Config.getInt("STREAM_FETCH_SIZE", 1000);
+
+  /**
+   * Streamed listings and exports running at once, each holding a pooled connection outside of
+   * the {@link QueryExecutor} for as long as its client reads.
+   */
+  private static final Semaphore STREAMS =
+      new Semaphore(Config.getInt("STREAM_MAX_CONCURRENCY", 4));
+
+  private static final Field<String> ARTIST_CREDIT = artistCredit();
+  private static final Field<String> FIRST_LABEL_NAME = firstLabelName();
+  private static final Field<String> FIRST_LABEL_CATNO = firstLabelCatno();
+  private static final Field<String> FIRST_FORMAT_NAME = firstFormatName();
+  private static final Field<String[]> FORMAT_NAMES = formatNames();
 
   private final DSLContext create;
+  private final FetchMode fetchMode;
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
 
   @Inject
   Repository(DSLContext dslContext) {
+    this(dslContext, Config.getEnum("DB_FETCH_MODE", FetchMode.class, FetchMode.FANOUT));
+  }
+
+  Repository(DSLContext dslContext, FetchMode fetchMode) {
     this.create = dslContext;
+    this.fetchMode = fetchMode;
   }
 
   public CompletionStage<Artist> findArtistById(Integer artistId) {
-    var artistFuture =
-        create
-            .selectFrom(ARTISTS)
-            .where(ARTISTS.ID.eq(artistId))
-            .fetchAsync()
-            .thenApply(rs -> rs.isNotEmpty() ? rs.get(0) : null);
+    return fetchArtists(List.of(artistId)).thenApply(artists -> artists.get(artistId));
+  }
 
-    return artistFuture.thenCompose(
-        artistsRecord -> {
-          if (artistsRecord == null) {
-            return CompletableFuture.completedFuture(null);
-          }
+  /** Fetches the artists with the given ids, keyed by id. Missing ids have no entry. */
+  @Override
+  public CompletionStage<Map<Integer, Artist>> fetchArtists(Collection<Integer> artistIds) {
+    return fetchMode == FetchMode.AGGREGATE
+        ? fetchAggregated(ARTIST_JSON_BY_ID, artistIds, Artist.class)
+        : fetchArtistsFanOut(artistIds);
+  }
 
-          var nameVariationsFuture =
-              create
-                  .select(ARTIST_NAMEVARIATIONS.NAMEVARIATION)
-                  .from(ARTIST_NAMEVARIATIONS)
-                  .where(ARTIST_NAMEVARIATIONS.ARTIST_ID.eq(artistId))
-                  .orderBy(ARTIST_NAMEVARIATIONS.OFST)
-                  .fetchAsync()
-                  .thenApply(r -> r.getValues(ARTIST_NAMEVARIATIONS.NAMEVARIATION))
-                  .toCompletableFuture();
-
-          var urlsFuture =
-              create
-                  .select(ARTIST_URLS.URL)
-                  .from(ARTIST_URLS)
-                  .where(ARTIST_URLS.ARTIST_ID.eq(artistId))
-                  .orderBy(ARTIST_URLS.OFST)
-                  .fetchAsync()
-                  .thenApply(r -> r.getValues(ARTIST_URLS.URL))
-                  .toCompletableFuture();
-
-          var aliasesFuture =
-              create
-                  .select(ARTIST_ALIASES.ARTIST2_ID, ARTIST_ALIASES.NAME)
-                  .from(ARTIST_ALIASES)
-                  .where(ARTIST_ALIASES.ARTIST_ID.eq(artistId))
-                  .orderBy(ARTIST_ALIASES.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      results ->
-                          results.map(
-                              r -> {
-                                var alias = new ArtistAlias();
-                                alias.setId(r.getValue(ARTIST_ALIASES.ARTIST2_ID));
-                                alias.setName(r.getValue(ARTIST_ALIASES.NAME));
-                                return alias;
-                              }))
-                  .toCompletableFuture();
-
-          var groupsFuture =
-              create
-                  .select(ARTIST_GROUPS.ARTIST2_ID, ARTIST_GROUPS.NAME)
-                  .from(ARTIST_GROUPS)
-                  .where(ARTIST_GROUPS.ARTIST_ID.eq(artistId))
-                  .orderBy(ARTIST_GROUPS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      results ->
-                          results.map(
-                              r -> {
-                                var group = new Group();
-                                group.setId(r.getValue(ARTIST_GROUPS.ARTIST2_ID));
-                                group.setName(r.getValue(ARTIST_GROUPS.NAME));
-                                return group;
-                              }))
-                  .toCompletableFuture();
-
-          var membersFuture =
-              create
-                  .select(ARTIST_MEMBERS.ARTIST2_ID, ARTIST_MEMBERS.NAME)
-                  .from(ARTIST_MEMBERS)
-                  .where(ARTIST_MEMBERS.ARTIST_ID.eq(artistId))
-                  .orderBy(ARTIST_MEMBERS.OFST)
-                  .fetchAsync()
+  private CompletionStage<Map<Integer, Artist>> fetchArtistsFanOut(Collection<Integer> artistIds) {
+    return ARTISTS_BY_ID
+        .fetchAsync(create, ARTISTS, artistIds)
+        .thenCompose(
+            artistsRecords -> {
+              if (artistsRecords.isEmpty()) {
+                return CompletableFuture.completedFuture(Map.of());
+              }
+
+              var ids = artistsRecords.getValues(ARTISTS.ID);
+
+              var nameVariationsFuture =
+                  ARTIST_NAMEVARIATIONS_BY_ARTIST
+                      .fetchAsync(create, ARTIST_NAMEVARIATIONS, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  ARTIST_NAMEVARIATIONS.ARTIST_ID,
+                                  r -> r.get(ARTIST_NAMEVARIATIONS.NAMEVARIATION)))
+                      .toCompletableFuture();
+
+              var urlsFuture =
+                  ARTIST_URLS_BY_ARTIST
+                      .fetchAsync(create, ARTIST_URLS, ids)
+                      .thenApply(
+                          rs -> group(rs, ARTIST_URLS.ARTIST_ID, r -> r.get(ARTIST_URLS.URL)))
+                      .toCompletableFuture();
+
+              var aliasesFuture =
+                  ARTIST_ALIASES_BY_ARTIST
+                      .fetchAsync(create, ARTIST_ALIASES, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  ARTIST_ALIASES.ARTIST_ID,
+                                  r -> {
+                                    var alias = new ArtistAlias();
+                                    alias.setId(r.getValue(ARTIST_ALIASES.ARTIST2_ID));
+                                    alias.setName(r.getValue(ARTIST_ALIASES.NAME));
+                                    return alias;
+                                  }))
+                      .toCompletableFuture();
+
+              var groupsFuture =
+                  ARTIST_GROUPS_BY_ARTIST
+                      .fetchAsync(create, ARTIST_GROUPS, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  ARTIST_GROUPS.ARTIST_ID,
+                                  r -> {
+                                    var group = new Group();
+                                    group.setId(r.getValue(ARTIST_GROUPS.ARTIST2_ID));
+                                    group.setName(r.getValue(ARTIST_GROUPS.NAME));
+                                    return group;
+                                  }))
+                      .toCompletableFuture();
+
+              var membersFuture =
+                  ARTIST_MEMBERS_BY_ARTIST
+                      .fetchAsync(create, ARTIST_MEMBERS, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  ARTIST_MEMBERS.ARTIST_ID,
+                                  r -> {
+                                    var member = new GroupMember();
+                                    member.setId(r.getValue(ARTIST_MEMBERS.ARTIST2_ID));
+                                    member.setName(r.getValue(ARTIST_MEMBERS.NAME));
+                                    return member;
+                                  }))
+                      .toCompletableFuture();
+
+              return CompletableFuture.allOf(
+                      nameVariationsFuture, urlsFuture, aliasesFuture, groupsFuture, membersFuture)
                   .thenApply(
-                      results ->
-                          results.map(
-                              r -> {
-                                var member = new GroupMember();
-                                member.setId(r.getValue(ARTIST_MEMBERS.ARTIST2_ID));
-                                member.setName(r.getValue(ARTIST_MEMBERS.NAME));
-                                return member;
-                              }))
-                  .toCompletableFuture();
-
-          return CompletableFuture.allOf(
-                  nameVariationsFuture, urlsFuture, aliasesFuture, groupsFuture, membersFuture)
-              .thenApply(
-                  (Void) -> {
-                    var artist = new Artist();
-                    artist.setId(artistsRecord.getId());
-                    artist.setName(artistsRecord.getName());
-                    artist.setRealname(artistsRecord.getRealName());
-                    artist.setProfile(artistsRecord.getProfile());
-                    artist.setStatus(artistsRecord.getStatus());
-                    artist.setDataQuality(artistsRecord.getDataQuality());
-                    artist.setNamevariations(nameVariationsFuture.join());
-                    artist.setUrls(urlsFuture.join());
-                    artist.setAliases(aliasesFuture.join());
-                    artist.setGroups(groupsFuture.join());
-                    artist.setMembers(membersFuture.join());
-                    return artist;
-                  });
-        });
+                      Void -> {
+                        Map<Integer, Artist> artists = new HashMap<>();
+                        for (var artistsRecord : artistsRecords) {
+                          var id = artistsRecord.getId();
+                          var artist = new Artist();
+                          artist.setId(id);
+                          artist.setName(artistsRecord.getName());
+                          artist.setRealname(artistsRecord.getRealName());
+                          artist.setProfile(artistsRecord.getProfile());
+                          artist.setStatus(artistsRecord.getStatus());
+                          artist.setDataQuality(artistsRecord.getDataQuality());
+                          artist.setNamevariations(
+                              nameVariationsFuture.join().getOrDefault(id, List.of()));
+                          artist.setUrls(urlsFuture.join().getOrDefault(id, List.of()));
+                          artist.setAliases(aliasesFuture.join().getOrDefault(id, List.of()));
+                          artist.setGroups(groupsFuture.join().getOrDefault(id, List.of()));
+                          artist.setMembers(membersFuture.join().getOrDefault(id, List.of()));
+                          artists.put(id, artist);
+                        }
+                        return artists;
+                      });
+            });
   }
 
   public CompletionStage<Release> findReleaseById(Integer releaseId) {
-    var releaseStage =
-        create
-            .selectFrom(RELEASES)
-            .where(RELEASES.ID.eq(releaseId))
-            .fetchAsync()
-            .thenApply(rs -> rs.isNotEmpty() ? rs.get(0) : null);
+    return fetchReleases(List.of(releaseId)).thenApply(releases -> releases.get(releaseId));
+  }
 
-    return releaseStage.thenCompose(
-        releaseRecord -> {
-          if (releaseRecord == null) {
-            return CompletableFuture.completedFuture(null);
-          }
+  /** Fetches the releases with the given ids, keyed by id. Missing ids have no entry. */
+  @Override
+  public CompletionStage<Map<Integer, Release>> fetchReleases(Collection<Integer> releaseIds) {
+    switch (fetchMode) {
+      case AGGREGATE:
+        return fetchAggregated(RELEASE_JSON_BY_ID, releaseIds, Release.class);
+      case PIPELINED:
+        return fetchReleasesPipelined(releaseIds);
+      default:
+        return fetchReleasesFanOut(releaseIds);
+    }
+  }
 
-          var genresFuture =
-              create
-                  .select(RELEASE_GENRES.GENRE)
-                  .from(RELEASE_GENRES)
-                  .where(RELEASE_GENRES.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_GENRES.OFST)
-                  .fetchAsync()
-                  .thenApply(rs -> rs.map(r -> r.get(RELEASE_GENRES.GENRE)))
-                  .toCompletableFuture();
-
-          var stylesFuture =
-              create
-                  .select(RELEASE_STYLES.STYLE)
-                  .from(RELEASE_STYLES)
-                  .where(RELEASE_STYLES.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_STYLES.OFST)
-                  .fetchAsync()
-                  .thenApply(rs -> rs.map(r -> r.get(RELEASE_STYLES.STYLE)))
-                  .toCompletableFuture();
-
-          var videosFuture =
-              create
-                  .selectFrom(RELEASE_VIDEOS)
-                  .where(RELEASE_VIDEOS.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_VIDEOS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var video = new ReleaseVideo();
-                                video.setUrl(r.getSrc());
-                                video.setTitle(r.getTitle());
-                                video.setDescription(r.getDescription());
-                                video.setEmbed(r.getEmbed());
-                                video.setDuration(r.getDuration());
-                                return video;
-                              }))
-                  .toCompletableFuture();
-
-          var formatsFuture =
-              create
-                  .selectFrom(RELEASE_FORMATS)
-                  .where(RELEASE_FORMATS.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_FORMATS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var format = new ReleaseFormat();
-                                format.setName(r.getName());
-                                format.setQty(r.getQty());
-                                format.setText(r.getText());
-                                return format;
-                              }))
-                  .toCompletableFuture();
-
-          var companiesFuture =
-              create
-                  .selectFrom(RELEASE_COMPANIES)
-                  .where(RELEASE_COMPANIES.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_COMPANIES.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var company = new ReleaseCompany();
-                                company.setId(r.getCompanyId());
-                                company.setName(r.getName());
-                                company.setCatno(r.getCatno());
-                                company.setEntityType(r.getEntityType());
-                                company.setEntityTypeName(r.getEntityTypeName());
-                                return company;
-                              }))
-                  .toCompletableFuture();
-
-          var labelsFuture =
-              create
-                  .selectFrom(RELEASE_LABELS)
-                  .where(RELEASE_LABELS.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_LABELS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var label = new ReleaseLabel();
-                                label.setId(r.getLabelId());
-                                label.setName(r.getName());
-                                label.setCatno(r.getCatno());
-                                return label;
-                              }))
-                  .toCompletableFuture();
-
-          var artistsFuture =
-              create
-                  .selectFrom(RELEASE_ARTIST_MAPS)
-                  .where(RELEASE_ARTIST_MAPS.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_ARTIST_MAPS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var artist = new ReleaseArtist();
-                                artist.setId(r.getArtistId());
-                                artist.setAnv(r.getAnv());
-                                artist.setJoin(r.getJoinRelation());
-                                artist.setName(r.getName());
-                                artist.setTracks(r.getTracks());
-                                return artist;
-                              }))
-                  .toCompletableFuture();
-
-          var extraArtistsFuture =
-              create
-                  .selectFrom(RELEASE_EXTRA_ARTIST_MAPS)
-                  .where(RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID.eq(releaseId))
-                  .orderBy(RELEASE_EXTRA_ARTIST_MAPS.OFST)
-                  .fetchAsync()
+  private CompletionStage<Map<Integer, Release>> fetchReleasesFanOut(
+      Collection<Integer> releaseIds) {
+    return RELEASES_BY_ID
+        .fetchAsync(create, RELEASES, releaseIds)
+        .thenCompose(
+            releaseRecords -> {
+              if (releaseRecords.isEmpty()) {
+                return CompletableFuture.completedFuture(Map.of());
+              }
+
+              var ids = releaseRecords.getValues(RELEASES.ID);
+
+              var genresFuture =
+                  RELEASE_GENRES_BY_RELEASE
+                      .fetchAsync(create, RELEASE_GENRES, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs, RELEASE_GENRES.RELEASE_ID, r -> r.get(RELEASE_GENRES.GENRE)))
+                      .toCompletableFuture();
+
+              var stylesFuture =
+                  RELEASE_STYLES_BY_RELEASE
+                      .fetchAsync(create, RELEASE_STYLES, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs, RELEASE_STYLES.RELEASE_ID, r -> r.get(RELEASE_STYLES.STYLE)))
+                      .toCompletableFuture();
+
+              var videosFuture =
+                  RELEASE_VIDEOS_BY_RELEASE
+                      .fetchAsync(create, RELEASE_VIDEOS, ids)
+                      .thenApply(rs -> group(rs, RELEASE_VIDEOS.RELEASE_ID, Repository::toVideo))
+                      .toCompletableFuture();
+
+              var formatsFuture =
+                  RELEASE_FORMATS_BY_RELEASE
+                      .fetchAsync(create, RELEASE_FORMATS, ids)
+                      .thenApply(rs -> group(rs, RELEASE_FORMATS.RELEASE_ID, Repository::toFormat))
+                      .toCompletableFuture();
+
+              var companiesFuture =
+                  RELEASE_COMPANIES_BY_RELEASE
+                      .fetchAsync(create, RELEASE_COMPANIES, ids)
+                      .thenApply(
+                          rs -> group(rs, RELEASE_COMPANIES.RELEASE_ID, Repository::toCompany))
+                      .toCompletableFuture();
+
+              var labelsFuture =
+                  RELEASE_LABELS_BY_RELEASE
+                      .fetchAsync(create, RELEASE_LABELS, ids)
+                      .thenApply(rs -> group(rs, RELEASE_LABELS.RELEASE_ID, Repository::toLabel))
+                      .toCompletableFuture();
+
+              var artistsFuture =
+                  RELEASE_ARTIST_MAPS_BY_RELEASE
+                      .fetchAsync(create, RELEASE_ARTIST_MAPS, ids)
+                      .thenApply(
+                          rs -> group(rs, RELEASE_ARTIST_MAPS.RELEASE_ID, Repository::toArtist))
+                      .toCompletableFuture();
+
+              var extraArtistsFuture =
+                  RELEASE_EXTRA_ARTIST_MAPS_BY_RELEASE
+                      .fetchAsync(create, RELEASE_EXTRA_ARTIST_MAPS, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID,
+                                  Repository::toExtraArtist))
+                      .toCompletableFuture();
+
+              var trackArtistsFuture =
+                  TRACK_ARTIST_MAPS_BY_RELEASE
+                      .fetchAsync(create, TRACK_ARTIST_MAPS, ids)
+                      .toCompletableFuture();
+
+              var trackExtraArtistsFuture =
+                  TRACK_EXTRA_ARTIST_MAPS_BY_RELEASE
+                      .fetchAsync(create, TRACK_EXTRA_ARTIST_MAPS, ids)
+                      .toCompletableFuture();
+
+              var tracksDependantFutures =
+                  CompletableFuture.allOf(trackArtistsFuture, trackExtraArtistsFuture);
+
+              var tracksFuture =
+                  TRACKS_BY_RELEASE
+                      .fetchAsync(create, TRACKS, ids)
+                      .thenCombine(
+                          tracksDependantFutures,
+                          (rs, Void) ->
+                              tracklists(
+                                  rs, trackArtistsFuture.join(), trackExtraArtistsFuture.join()))
+                      .toCompletableFuture();
+
+              return CompletableFuture.allOf(
+                      genresFuture,
+                      stylesFuture,
+                      videosFuture,
+                      formatsFuture,
+                      companiesFuture,
+                      labelsFuture,
+                      artistsFuture,
+                      extraArtistsFuture,
+                      tracksFuture)
                   .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var artist = new ReleaseExtraArtist();
-                                artist.setId(r.getArtistId());
-                                artist.setAnv(r.getAnv());
-                                artist.setJoin(r.getJoinRelation());
-                                artist.setName(r.getName());
-                                artist.setTracks(r.getTracks());
-                                artist.setRole(r.getRole());
-                                return artist;
-                              }))
-                  .toCompletableFuture();
-
-          var trackToArtistsFuture =
-              create
-                  .selectFrom(TRACK_ARTIST_MAPS)
-                  .where(TRACK_ARTIST_MAPS.RELEASE_ID.eq(releaseId))
-                  .orderBy(TRACK_ARTIST_MAPS.ARTIST_OFST)
-                  .fetchAsync()
+                      Void -> {
+                        Map<Integer, Release> releases = new HashMap<>();
+                        for (var releaseRecord : releaseRecords) {
+                          var id = releaseRecord.getId();
+                          var release = new Release();
+                          release.setId(id);
+                          release.setCountry(releaseRecord.getCountry());
+                          release.setDataQuality(releaseRecord.getDataQuality());
+                          release.setMasterId(releaseRecord.getMasterId());
+                          release.setNotes(releaseRecord.getNotes());
+                          release.setReleased(releaseRecord.getReleased());
+                          release.setStatus(releaseRecord.getStatus());
+                          release.setTitle(releaseRecord.getTitle());
+                          release.setGenres(genresFuture.join().getOrDefault(id, List.of()));
+                          release.setStyles(stylesFuture.join().getOrDefault(id, List.of()));
+                          release.setVideos(videosFuture.join().getOrDefault(id, List.of()));
+                          release.setFormats(formatsFuture.join().getOrDefault(id, List.of()));
+                          release.setCompanies(
+                              companiesFuture.join().getOrDefault(id, List.of()));
+                          release.setLabels(labelsFuture.join().getOrDefault(id, List.of()));
+                          release.setArtists(artistsFuture.join().getOrDefault(id, List.of()));
+                          release.setExtraartists(
+                              extraArtistsFuture.join().getOrDefault(id, List.of()));
+                          release.setTracklist(tracksFuture.join().getOrDefault(id, List.of()));
+                          releases.put(id, release);
+                        }
+                        return releases;
+                      });
+            });
+  }
+
+  /**
+   * Sends the release query and all of its child-table queries as one multi-statement round trip,
+   * and maps the result sets in the order of {@link LookupQueries#RELEASES_WITH_CHILDREN_BY_ID}
+   * with the same mappers as the fan-out. The child queries filter on the requested ids, so they
+   * don't wait for the releases.
+   */
+  private CompletionStage<Map<Integer, Release>> fetchReleasesPipelined(
+      Collection<Integer> releaseIds) {
+    return RELEASES_WITH_CHILDREN_BY_ID
+        .fetchManyAsync(create, releaseIds)
+        .thenApply(
+            results -> {
+              var releaseRecords = results.get(0).into(RELEASES);
+              if (releaseRecords.isEmpty()) {
+                return Map.of();
+              }
+
+              var genres =
+                  group(
+                      results.get(1).into(RELEASE_GENRES),
+                      RELEASE_GENRES.RELEASE_ID,
+                      r -> r.get(RELEASE_GENRES.GENRE));
+              var styles =
+                  group(
+                      results.get(2).into(RELEASE_STYLES),
+                      RELEASE_STYLES.RELEASE_ID,
+                      r -> r.get(RELEASE_STYLES.STYLE));
+              var videos =
+                  group(
+                      results.get(3).into(RELEASE_VIDEOS),
+                      RELEASE_VIDEOS.RELEASE_ID,
+                      Repository::toVideo);
+              var formats =
+                  group(
+                      results.get(4).into(RELEASE_FORMATS),
+                      RELEASE_FORMATS.RELEASE_ID,
+                      Repository::toFormat);
+              var companies =
+                  group(
+                      results.get(5).into(RELEASE_COMPANIES),
+                      RELEASE_COMPANIES.RELEASE_ID,
+                      Repository::toCompany);
+              var labels =
+                  group(
+                      results.get(6).into(RELEASE_LABELS),
+                      RELEASE_LABELS.RELEASE_ID,
+                      Repository::toLabel);
+              var artists =
+                  group(
+                      results.get(7).into(RELEASE_ARTIST_MAPS),
+                      RELEASE_ARTIST_MAPS.RELEASE_ID,
+                      Repository::toArtist);
+              var extraArtists =
+                  group(
+                      results.get(8).into(RELEASE_EXTRA_ARTIST_MAPS),
+                      RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID,
+                      Repository::toExtraArtist);
+              var tracks =
+                  tracklists(
+                      results.get(11).into(TRACKS),
+                      results.get(9).into(TRACK_ARTIST_MAPS),
+                      results.get(10).into(TRACK_EXTRA_ARTIST_MAPS));
+
+              Map<Integer, Release> releases = new HashMap<>();
+              for (var releaseRecord : releaseRecords) {
+                var id = releaseRecord.getId();
+                var release = new Release();
+                release.setId(id);
+                release.setCountry(releaseRecord.getCountry());
+                release.setDataQuality(releaseRecord.getDataQuality());
+                release.setMasterId(releaseRecord.getMasterId());
+                release.setNotes(releaseRecord.getNotes());
+                release.setReleased(releaseRecord.getReleased());
+                release.setStatus(releaseRecord.getStatus());
+                release.setTitle(releaseRecord.getTitle());
+                release.setGenres(genres.getOrDefault(id, List.of()));
+                release.setStyles(styles.getOrDefault(id, List.of()));
+                release.setVideos(videos.getOrDefault(id, List.of()));
+                release.setFormats(formats.getOrDefault(id, List.of()));
+                release.setCompanies(companies.getOrDefault(id, List.of()));
+                release.setLabels(labels.getOrDefault(id, List.of()));
+                release.setArtists(artists.getOrDefault(id, List.of()));
+                release.setExtraartists(extraArtists.getOrDefault(id, List.of()));
+                release.setTracklist(tracks.getOrDefault(id, List.of()));
+                releases.put(id, release);
+              }
+              return releases;
+            });
+  }
+
+  /** Number of tracks of the release. */
+  public CompletionStage<Integer> countTracks(Integer releaseId) {
+    return TRACK_COUNT_BY_RELEASE
+        .fetchAsync(create, List.of(releaseId))
+        .thenApply(rs -> rs.get(0).get(0, Integer.class));
+  }
+
+  /**
+   * Writes the release as json without building a {@link Release}, byte for byte as {@code writer}
+   * writes the one fetched by {@link #fetchReleases}. The release and its child tables are read in
+   * one transaction from server-side cursors, {@code STREAM_FETCH_SIZE} rows per round trip, and
+   * every row is written as it is read, so memory use does not depend on the size of the release.
+   * Rows of child tables are mapped to their DTOs one at a time and written with {@code writer}.
+   *
+   * @return {@code false} if there is no such release, nothing is written then
+   */
+  public boolean writeRelease(Integer releaseId, JsonGenerator generator, ObjectWriter writer) {
+    return create.transactionResult(
+        configuration -> {
+          var dsl = DSL.using(configuration);
+          var release = dsl.selectFrom(RELEASES).where(RELEASES.ID.eq(releaseId)).fetchOne();
+          if (release == null) {
+            return false;
+          }
+
+          try {
+            writeRelease(dsl, release, generator, writer);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return true;
+        });
+  }
+
+  /** Writes the properties in the order, and with the inclusion rules, of the mapper. */
+  private static void writeRelease(
+      DSLContext dsl, ReleasesRecord release, JsonGenerator generator, ObjectWriter writer)
+      throws IOException {
+    var id = release.getId();
+    generator.writeStartObject();
+    generator.writeNumberField("id", id);
+    writeStringField(generator, "country", release.getCountry());
+    writeStringField(generator, "data_quality", release.getDataQuality());
+    if (release.getMasterId() != null) {
+      generator.writeNumberField("master_id", release.getMasterId());
+    }
+    writeStringField(generator, "notes", release.getNotes());
+    writeStringField(generator, "released", release.getReleased());
+    writeStringField(generator, "status", release.getStatus());
+    writeStringField(generator, "title", release.getTitle());
+
+    writeArrayField(
+        generator,
+        "artists",
+        dsl.selectFrom(RELEASE_ARTIST_MAPS)
+            .where(RELEASE_ARTIST_MAPS.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_ARTIST_MAPS.OFST),
+        r -> writer.writeValue(generator, toArtist(r)));
+    writeArrayField(
+        generator,
+        "extraartists",
+        dsl.selectFrom(RELEASE_EXTRA_ARTIST_MAPS)
+            .where(RELEASE_EXTRA_ARTIST_MAPS.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_EXTRA_ARTIST_MAPS.OFST),
+        r -> writer.writeValue(generator, toExtraArtist(r)));
+    writeArrayField(
+        generator,
+        "companies",
+        dsl.selectFrom(RELEASE_COMPANIES)
+            .where(RELEASE_COMPANIES.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_COMPANIES.OFST),
+        r -> writer.writeValue(generator, toCompany(r)));
+    writeArrayField(
+        generator,
+        "genres",
+        dsl.select(RELEASE_GENRES.GENRE)
+            .from(RELEASE_GENRES)
+            .where(RELEASE_GENRES.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_GENRES.OFST),
+        r -> generator.writeString(r.value1()));
+    writeArrayField(
+        generator,
+        "styles",
+        dsl.select(RELEASE_STYLES.STYLE)
+            .from(RELEASE_STYLES)
+            .where(RELEASE_STYLES.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_STYLES.OFST),
+        r -> generator.writeString(r.value1()));
+    writeArrayField(
+        generator,
+        "labels",
+        dsl.selectFrom(RELEASE_LABELS)
+            .where(RELEASE_LABELS.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_LABELS.OFST),
+        r -> writer.writeValue(generator, toLabel(r)));
+
+    try (var artists =
+            new TrackCredits<>(
+                dsl.selectFrom(TRACK_ARTIST_MAPS)
+                    .where(TRACK_ARTIST_MAPS.RELEASE_ID.eq(id))
+                    .orderBy(TRACK_ARTIST_MAPS.TRACK_OFST, TRACK_ARTIST_MAPS.ARTIST_OFST),
+                TRACK_ARTIST_MAPS.TRACK_OFST);
+        var extraArtists =
+            new TrackCredits<>(
+                dsl.selectFrom(TRACK_EXTRA_ARTIST_MAPS)
+                    .where(TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID.eq(id))
+                    .orderBy(
+                        TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST, TRACK_EXTRA_ARTIST_MAPS.ARTIST_OFST),
+                TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST)) {
+      writeArrayField(
+          generator,
+          "tracklist",
+          dsl.selectFrom(TRACKS).where(TRACKS.RELEASE_ID.eq(id)).orderBy(TRACKS.OFST),
+          track -> {
+            generator.writeStartObject();
+            writeStringField(generator, "title", track.getTitle());
+            writeStringField(generator, "duration", track.getDuration());
+            writeStringField(generator, "position", track.getPosition());
+            artists.writeArrayField(
+                generator,
+                "artists",
+                track.getOfst(),
+                r -> writer.writeValue(generator, toTrackArtist(r)));
+            extraArtists.writeArrayField(
+                generator,
+                "extraartists",
+                track.getOfst(),
+                r -> writer.writeValue(generator, toTrackExtraArtist(r)));
+            generator.writeEndObject();
+          });
+    }
+
+    writeArrayField(
+        generator,
+        "videos",
+        dsl.selectFrom(RELEASE_VIDEOS)
+            .where(RELEASE_VIDEOS.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_VIDEOS.OFST),
+        r -> writer.writeValue(generator, toVideo(r)));
+    writeArrayField(
+        generator,
+        "formats",
+        dsl.selectFrom(RELEASE_FORMATS)
+            .where(RELEASE_FORMATS.RELEASE_ID.eq(id))
+            .orderBy(RELEASE_FORMATS.OFST),
+        r -> writer.writeValue(generator, toFormat(r)));
+    generator.writeStringField("resource_url", Responses.createReleaseResourceUrl(id).toString());
+    generator.writeEndObject();
+  }
+
+  private static void writeStringField(JsonGenerator generator, String name, String value)
+      throws IOException {
+    if (value != null) {
+      generator.writeStringField(name, value);
+    }
+  }
+
+  /** Writes the rows as they are read, left out if there are none, like an empty list. */
+  private static <R extends Record> void writeArrayField(
+      JsonGenerator generator, String name, ResultQuery<R> query, RowWriter<? super R> rowWriter)
+      throws IOException {
+    try (var cursor = query.fetchSize(STREAM_FETCH_SIZE).fetchLazy()) {
+      if (!cursor.hasNext()) {
+        return;
+      }
+
+      generator.writeArrayFieldStart(name);
+      for (var r : cursor) {
+        rowWriter.write(r);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private interface RowWriter<R> {
+
+    void write(R r) throws IOException;
+  }
+
+  /** A cursor over the credits of the tracks of a release, read along with the tracks. */
+  private static class TrackCredits<R extends Record> implements AutoCloseable {
+
+    private final Cursor<R> cursor;
+    private final Field<Integer> trackOfst;
+    private R next;
+
+    TrackCredits(ResultQuery<R> query, Field<Integer> trackOfst) {
+      this.cursor = query.fetchSize(STREAM_FETCH_SIZE).fetchLazy();
+      this.trackOfst = trackOfst;
+      this.next = cursor.fetchNext();
+    }
+
+    /** Writes the credits of the track, tracks must be written in the order of their offsets. */
+    void writeArrayField(JsonGenerator generator, String name, int ofst, RowWriter<R> rowWriter)
+        throws IOException {
+      while (next != null && next.get(trackOfst) < ofst) {
+        next = cursor.fetchNext();
+      }
+      if (next == null || next.get(trackOfst) != ofst) {
+        return;
+      }
+
+      generator.writeArrayFieldStart(name);
+      while (next != null && next.get(trackOfst) == ofst) {
+        rowWriter.write(next);
+        next = cursor.fetchNext();
+      }
+      generator.writeEndArray();
+    }
+
+    @Override
+    public void close() {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Builds the tracklists of releases in one pass over their tracks, merging in the credits of
+   * every track. Tracks and credits are ordered by release id and track offset, so that the credits
+   * of a track are the next rows of their result and no maps of credits are built. Results in
+   * another order are sorted first, credits of tracks that do not exist are dropped.
+   */
+  static Map<Integer, List<Track>> tracklists(
+      Result<TracksRecord> tracks,
+      Result<TrackArtistMapsRecord> trackArtists,
+      Result<TrackExtraArtistMapsRecord> trackExtraArtists) {
+    var artists =
+        new TrackRows<>(
+            trackArtists,
+            TRACK_ARTIST_MAPS.RELEASE_ID,
+            TRACK_ARTIST_MAPS.TRACK_OFST,
+            Repository::toTrackArtist);
+    var extraArtists =
+        new TrackRows<>(
+            trackExtraArtists,
+            TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID,
+            TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST,
+            Repository::toTrackExtraArtist);
+    return group(
+        sortedByTrack(tracks, TRACKS.RELEASE_ID, TRACKS.OFST),
+        TRACKS.RELEASE_ID,
+        r ->
+            toTrack(
+                r,
+                artists.take(r.getReleaseId(), r.getOfst()),
+                extraArtists.take(r.getReleaseId(), r.getOfst())));
+  }
+
+  static Track toTrack(
+      TracksRecord r, List<TrackArtist> artists, List<TrackExtraArtist> extraArtists) {
+    var track = new Track();
+    track.setTitle(r.getTitle());
+    track.setDuration(r.getDuration());
+    track.setPosition(r.getPosition());
+    track.setArtists(artists);
+    track.setExtraartists(extraArtists);
+    return track;
+  }
+
+  private static ReleaseVideo toVideo(ReleaseVideosRecord r) {
+    var video = new ReleaseVideo();
+    video.setUrl(r.getSrc());
+    video.setTitle(r.getTitle());
+    video.setDescription(r.getDescription());
+    video.setEmbed(r.getEmbed());
+    video.setDuration(r.getDuration());
+    return video;
+  }
+
+  private static ReleaseFormat toFormat(ReleaseFormatsRecord r) {
+    var format = new ReleaseFormat();
+    format.setName(r.getName());
+    format.setQty(r.getQty());
+    format.setText(r.getText());
+    return format;
+  }
+
+  private static ReleaseCompany toCompany(ReleaseCompaniesRecord r) {
+    var company = new ReleaseCompany();
+    company.setId(r.getCompanyId());
+    company.setName(r.getName());
+    company.setCatno(r.getCatno());
+    company.setEntityType(r.getEntityType());
+    company.setEntityTypeName(r.getEntityTypeName());
+    return company;
+  }
+
+  private static ReleaseLabel toLabel(ReleaseLabelsRecord r) {
+    var label = new ReleaseLabel();
+    label.setId(r.getLabelId());
+    label.setName(r.getName());
+    label.setCatno(r.getCatno());
+    return label;
+  }
+
+  private static ReleaseArtist toArtist(ReleaseArtistMapsRecord r) {
+    var artist = new ReleaseArtist();
+    artist.setId(r.getArtistId());
+    artist.setAnv(r.getAnv());
+    artist.setJoin(r.getJoinRelation());
+    artist.setName(r.getName());
+    artist.setTracks(r.getTracks());
+    return artist;
+  }
+
+  private static ReleaseExtraArtist toExtraArtist(ReleaseExtraArtistMapsRecord r) {
+    var artist = new ReleaseExtraArtist();
+    artist.setId(r.getArtistId());
+    artist.setAnv(r.getAnv());
+    artist.setJoin(r.getJoinRelation());
+    artist.setName(r.getName());
+    artist.setTracks(r.getTracks());
+    artist.setRole(r.getRole());
+    return artist;
+  }
+
+  static TrackArtist toTrackArtist(TrackArtistMapsRecord r) {
+    var artist = new TrackArtist();
+    artist.setId(r.getArtistId());
+    artist.setName(r.getName());
+    artist.setAnv(r.getAnv());
+    artist.setJoin(r.getJoinRelation());
+    return artist;
+  }
+
+  static TrackExtraArtist toTrackExtraArtist(TrackExtraArtistMapsRecord r) {
+    var artist = new TrackExtraArtist();
+    artist.setId(r.getArtistId());
+    artist.setName(r.getName());
+    artist.setAnv(r.getAnv());
+    artist.setJoin(r.getJoinRelation());
+    artist.setRole(r.getRole());
+    return artist;
+  }
+
+  public CompletionStage<Label> findLabelById(Integer labelId) {
+    return fetchLabels(List.of(labelId)).thenApply(labels -> labels.get(labelId));
+  }
+
+  /** Fetches the labels with the given ids, keyed by id. Missing ids have no entry. */
+  @Override
+  public CompletionStage<Map<Integer, Label>> fetchLabels(Collection<Integer> labelIds) {
+    return fetchMode == FetchMode.AGGREGATE
+        ? fetchAggregated(LABEL_JSON_BY_ID, labelIds, Label.class)
+        : fetchLabelsFanOut(labelIds);
+  }
+
+  private CompletionStage<Map<Integer, Label>> fetchLabelsFanOut(Collection<Integer> labelIds) {
+    return LABELS_BY_ID
+        .fetchAsync(create, LABELS, labelIds)
+        .thenCompose(
+            labelRecords -> {
+              if (labelRecords.isEmpty()) {
+                return CompletableFuture.completedFuture(Map.of());
+              }
+
+              var ids = labelRecords.getValues(LABELS.ID);
+
+              var subLabelsFuture =
+                  LABEL_SUBLABELS_BY_LABEL
+                      .fetchAsync(create, LABEL_SUBLABELS, ids)
+                      .thenApply(
+                          rs ->
+                              group(
+                                  rs,
+                                  LABEL_SUBLABELS.LABEL_ID,
+                                  r -> {
+                                    var subLabelDto = new SubLabel();
+                                    subLabelDto.setId(r.get(LABEL_SUBLABELS.LABEL2_ID));
+                                    subLabelDto.setName(r.get(LABEL_SUBLABELS.NAME));
+                                    return subLabelDto;
+                                  }))
+                      .toCompletableFuture();
+
+              var urlsFuture =
+                  LABEL_URLS_BY_LABEL
+                      .fetchAsync(create, LABEL_URLS, ids)
+                      .thenApply(rs -> group(rs, LABEL_URLS.LABEL_ID, r -> r.get(LABEL_URLS.URL)))
+                      .toCompletableFuture();
+
+              return CompletableFuture.allOf(subLabelsFuture, urlsFuture)
                   .thenApply(
-                      rs ->
-                          rs.stream()
-                              .collect(
-                                  groupingBy(
-                                      TrackArtistMapsRecord::getTrackOfst,
-                                      mapping(
-                                          r -> {
-                                            var artist = new TrackArtist();
-                                            artist.setId(r.getArtistId());
-                                            artist.setName(r.getName());
-                                            artist.setAnv(r.getAnv());
-                                            artist.setJoin(r.getJoinRelation());
-                                            return artist;
-                                          },
-                                          toList()))))
-                  .toCompletableFuture();
-
-          var trackToExtraArtistsFuture =
-              create
-                  .selectFrom(TRACK_EXTRA_ARTIST_MAPS)
-                  .where(TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID.eq(releaseId))
-                  .orderBy(TRACK_EXTRA_ARTIST_MAPS.ARTIST_OFST)
+                      Void -> {
+                        Map<Integer, Label> labels = new HashMap<>();
+                        for (var labelRecord : labelRecords) {
+                          var id = labelRecord.getId();
+                          var label = new Label();
+                          label.setId(id);
+                          label.setName(labelRecord.getName());
+                          label.setProfile(labelRecord.getProfile());
+                          label.setDataQuality(labelRecord.getDataQuality());
+                          label.setContactInfo(labelRecord.getContactInfo());
+                          label.setSublabels(subLabelsFuture.join().getOrDefault(id, List.of()));
+                          label.setUrls(urlsFuture.join().getOrDefault(id, List.of()));
+                          labels.put(id, label);
+                        }
+                        return labels;
+                      });
+            });
+  }
+
+  public CompletionStage<Master> findMasterById(Integer masterId) {
+    return fetchMasters(List.of(masterId)).thenApply(masters -> masters.get(masterId));
+  }
+
+  /** Fetches the masters with the given ids, keyed by id. Missing ids have no entry. */
+  @Override
+  public CompletionStage<Map<Integer, Master>> fetchMasters(Collection<Integer> masterIds) {
+    return MASTERS_BY_ID
+        .fetchAsync(create, MASTERS, masterIds)
+        .thenApply(
+            rs -> {
+              Map<Integer, Master> masters = new HashMap<>();
+              for (var r : rs) {
+                var master = toMaster(r);
+                masters.put(master.getId(), master);
+              }
+              return masters;
+            });
+  }
+
+  /**
+   * Passes the artists with ids in {@code [fromId, toId]} to the consumer in id order, reading
+   * them from a server-side cursor. Blocks the calling thread until all have been consumed.
+   */
+  public void exportArtists(int fromId, int toId, Consumer<? super Artist> consumer) {
+    exportAggregated(
+        ARTISTS,
+        ARTISTS.ID,
+        JsonQueries.artist(),
+        ARTISTS.ID.between(fromId, toId),
+        Artist.class,
+        consumer);
+  }
+
+  /** Like {@link #exportArtists}, for releases. */
+  public void exportReleases(int fromId, int toId, Consumer<? super Release> consumer) {
+    exportAggregated(
+        RELEASES,
+        RELEASES.ID,
+        JsonQueries.release(),
+        RELEASES.ID.between(fromId, toId),
+        Release.class,
+        consumer);
+  }
+
+  /** Like {@link #exportArtists}, for the releases of a label. */
+  public void exportReleasesOfLabel(Integer labelId, Consumer<? super Release> consumer) {
+    exportAggregated(
+        RELEASES,
+        RELEASES.ID,
+        JsonQueries.release(),
+        RELEASES.ID.in(
+            DSL.select(RELEASE_LABELS.RELEASE_ID)
+                .from(RELEASE_LABELS)
+                .where(RELEASE_LABELS.LABEL_ID.eq(labelId))),
+        Release.class,
+        consumer);
+  }
+
+  /** Like {@link #exportArtists}, for labels. */
+  public void exportLabels(int fromId, int toId, Consumer<? super Label> consumer) {
+    exportAggregated(
+        LABELS,
+        LABELS.ID,
+        JsonQueries.label(),
+        LABELS.ID.between(fromId, toId),
+        Label.class,
+        consumer);
+  }
+
+  /** Like {@link #exportArtists}, for masters. */
+  public void exportMasters(int fromId, int toId, Consumer<? super Master> consumer) {
+    forEachRow(
+        dsl ->
+            dsl
+                .select(MASTERS.ID, MASTERS.MAIN_RELEASE_ID)
+                .from(MASTERS)
+                .where(MASTERS.ID.between(fromId, toId))
+                .orderBy(MASTERS.ID),
+        r -> consumer.accept(toMaster(r)));
+  }
+
+  private static Master toMaster(Record r) {
+    var master = new Master();
+    master.setId(r.get(MASTERS.ID));
+    master.setMainReleaseId(r.get(MASTERS.MAIN_RELEASE_ID));
+    return master;
+  }
+
+  /** Credited artist names of the current {@code RELEASES} row. */
+  private static Field<String> artistCredit() {
+    return DSL.field(
+        DSL.select(
+                DSL.field(
+                    "string_agg({0}, ', ' order by {1})",
+                    String.class,
+                    RELEASE_ARTIST_MAPS.NAME,
+                    RELEASE_ARTIST_MAPS.OFST))
+            .from(RELEASE_ARTIST_MAPS)
+            .where(RELEASE_ARTIST_MAPS.RELEASE_ID.eq(RELEASES.ID)));
+  }
+
+  /** Name of the first label of the current {@code RELEASES} row. */
+  private static Field<String> firstLabelName() {
+    return DSL.field(
+        DSL.select(RELEASE_LABELS.NAME)
+            .from(RELEASE_LABELS)
+            .where(RELEASE_LABELS.RELEASE_ID.eq(RELEASES.ID))
+            .orderBy(RELEASE_LABELS.OFST)
+            .limit(1));
+  }
+
+  /** Catalog number of the first label of the current {@code RELEASES} row. */
+  private static Field<String> firstLabelCatno() {
+    return DSL.field(
+        DSL.select(RELEASE_LABELS.CATNO)
+            .from(RELEASE_LABELS)
+            .where(RELEASE_LABELS.RELEASE_ID.eq(RELEASES.ID))
+            .orderBy(RELEASE_LABELS.OFST)
+            .limit(1));
+  }
+
+  /** Format names of the current {@code RELEASES} row, in order. */
+  private static Field<String[]> formatNames() {
+    return DSL.field(
+        "array({0})",
+        String[].class,
+        DSL.select(RELEASE_FORMATS.NAME)
+            .from(RELEASE_FORMATS)
+            .where(RELEASE_FORMATS.RELEASE_ID.eq(RELEASES.ID))
+            .orderBy(RELEASE_FORMATS.OFST));
+  }
+
+  /** Name of the first format of the current {@code RELEASES} row. */
+  private static Field<String> firstFormatName() {
+    return DSL.field(
+        DSL.select(RELEASE_FORMATS.NAME)
+            .from(RELEASE_FORMATS)
+            .where(RELEASE_FORMATS.RELEASE_ID.eq(RELEASES.ID))
+            .orderBy(RELEASE_FORMATS.OFST)
+            .limit(1));
+  }
+
+  /** The year of a {@code RELEASED} date such as {@code 1999-05-00}. */
+  private static Integer parseYear(String released) {
+    if (released == null || released.length() < 4) {
+      return null;
+    }
+    for (int i = 0; i < 4; i++) {
+      if (!Character.isDigit(released.charAt(i))) {
+        return null;
+      }
+    }
+    int year = Integer.parseInt(released.substring(0, 4));
+    return year > 0 ? year : null;
+  }
+
+  /**
+   * Counts the distinct ids of a listing and the ids up to the page cursor in a single pass over
+   * the ids. Unless the page is the last one, the cursor of the last page is then found from the
+   * end of the listing, which sorts no more than a page of ids.
+   */
+  private CompletionStage<PageStats> fetchPageStats(
+      Select<? extends Record1<Integer>> ids, Field<Integer> idField, PageRequest pageRequest) {
+    var idsTable = ids.asTable("ids");
+    var id = idsTable.field(idField);
+    int perPage = pageRequest.getTotal();
+
+    return create
+        .select(
+            DSL.count(),
+            DSL.field(
+                "count(*) filter (where {0} <= {1})",
+                Integer.class, id, DSL.val(pageRequest.getPrevious())))
+        .from(idsTable)
+        .fetchAsync()
+        .thenCompose(
+            rs -> {
+              int items = rs.get(0).value1();
+              int before = rs.get(0).value2();
+              if (before / perPage >= (items - 1) / perPage) {
+                return CompletableFuture.completedFuture(new PageStats(items, before, null));
+              }
+
+              int lastPageStart = (items - 1) / perPage * perPage;
+              return create
+                  .select(id)
+                  .from(idsTable)
+                  .orderBy(id.desc())
+                  .limit(1)
+                  .offset(items - lastPageStart)
                   .fetchAsync()
                   .thenApply(
-                      rs ->
-                          rs.stream()
-                              .collect(
-                                  groupingBy(
-                                      TrackExtraArtistMapsRecord::getTrackOfst,
-                                      mapping(
-                                          r -> {
-                                            var artist = new TrackExtraArtist();
-                                            artist.setId(r.getArtistId());
-                                            artist.setName(r.getName());
-                                            artist.setAnv(r.getAnv());
-                                            artist.setJoin(r.getJoinRelation());
-                                            artist.setRole(r.getRole());
-                                            return artist;
-                                          },
-                                          toList()))))
-                  .toCompletableFuture();
-
-          var tracksDependantFutures =
-              CompletableFuture.allOf(trackToArtistsFuture, trackToExtraArtistsFuture);
-
-          var tracksFuture =
-              create
-                  .selectFrom(TRACKS)
-                  .where(TRACKS.RELEASE_ID.eq(releaseId))
-                  .orderBy(TRACKS.OFST)
-                  .fetchAsync()
-                  .thenCombine(
-                      tracksDependantFutures,
-                      (rs, Void) -> {
-                        var trackToArtists = trackToArtistsFuture.join();
-                        var trackToExtraArtists = trackToExtraArtistsFuture.join();
-
-                        return rs.map(
-                            r -> {
-                              var track = new Track();
-                              track.setTitle(r.getTitle());
-                              track.setDuration(r.getDuration());
-                              track.setPosition(r.getPosition());
-                              track.setArtists(trackToArtists.get(r.getOfst()));
-                              track.setExtraartists(trackToExtraArtists.get(r.getOfst()));
-                              return track;
-                            });
-                      })
-                  .toCompletableFuture();
-
-          return CompletableFuture.allOf(
-                  genresFuture,
-                  stylesFuture,
-                  videosFuture,
-                  formatsFuture,
-                  companiesFuture,
-                  labelsFuture,
-                  artistsFuture,
-                  extraArtistsFuture,
-                  tracksFuture)
-              .thenApply(
-                  Void -> {
-                    var release = new Release();
-                    release.setId(releaseId);
-                    release.setCountry(releaseRecord.getCountry());
-                    release.setDataQuality(releaseRecord.getDataQuality());
-                    release.setMasterId(releaseRecord.getMasterId());
-                    release.setNotes(releaseRecord.getNotes());
-                    release.setReleased(releaseRecord.getReleased());
-                    release.setStatus(releaseRecord.getStatus());
-                    release.setTitle(releaseRecord.getTitle());
-                    release.setGenres(genresFuture.join());
-                    release.setStyles(stylesFuture.join());
-                    release.setVideos(videosFuture.join());
-                    release.setFormats(formatsFuture.join());
-                    release.setCompanies(companiesFuture.join());
-                    release.setLabels(labelsFuture.join());
-                    release.setArtists(artistsFuture.join());
-                    release.setExtraartists(extraArtistsFuture.join());
-                    release.setTracklist(tracksFuture.join());
-
-                    return release;
-                  });
-        });
+                      last -> {
+                        Integer lastCursor = last.isEmpty() ? null : last.get(0).value1();
+                        return new PageStats(items, before, lastCursor);
+                      });
+            });
   }
 
-  public CompletionStage<Label> findLabelById(Integer labelId) {
-    var labelFuture =
+  private static Pagination paginate(
+      String path, PageRequest pageRequest, PageStats stats, Integer lastId) {
+    int perPage = pageRequest.getTotal();
+
+    var pagination = new Pagination();
+    pagination.setPerPage(perPage);
+    pagination.setItems(stats.getItems());
+    pagination.setPage(stats.getBefore() / perPage + 1);
+    pagination.setPages(Math.max(1, (stats.getItems() + perPage - 1) / perPage));
+
+    var urls = new PaginationUrls();
+    if (lastId != null && stats.getBefore() + perPage < stats.getItems()) {
+      urls.setNext(Responses.createPageUrl(path, lastId, perPage));
+    }
+    if (pagination.getPage() < pagination.getPages()) {
+      var lastCursor = stats.getLastCursor();
+      urls.setLast(Responses.createPageUrl(path, lastCursor != null ? lastCursor : 0, perPage));
+    }
+    pagination.setUrls(urls);
+    return pagination;
+  }
+
+  @Value
+  private static class PageStats {
+
+    int items;
+    int before;
+    /** Last id before the last page, {@code null} if there is a single page. */
+    Integer lastCursor;
+  }
+
+  /** Fetches entities as json documents built by one of the {@link JsonQueries}. */
+  private <T> CompletionStage<Map<Integer, T>> fetchAggregated(
+      QueryTemplate template, Collection<Integer> ids, Class<T> type) {
+    return template
+        .fetchAsync(create, ids)
+        .thenApply(
+            rs -> {
+              Map<Integer, T> entities = new HashMap<>();
+              for (var r : rs) {
+                entities.put(r.get(0, Integer.class), readJson(r.get(1, String.class), type));
+              }
+              return entities;
+            });
+  }
+
+  /** Streams entities built as json documents by one of the {@link JsonQueries}, in id order. */
+  private <T> void exportAggregated(
+      Table<?> table,
+      Field<Integer> id,
+      Field<String> json,
+      Condition condition,
+      Class<T> type,
+      Consumer<? super T> consumer) {
+    forEachRow(
+        dsl -> dsl.select(id, json).from(table).where(condition).orderBy(id),
+        r -> consumer.accept(readJson(r.get(json), type)));
+  }
+
+  /**
+   * Runs the query in a transaction, so that PostgreSQL opens a server-side cursor, and passes the
+   * rows to the action as they arrive, {@code STREAM_FETCH_SIZE} rows per round trip. A failing
+   * action, such as a write to a disconnected client, closes the cursor and rolls back. At most
+   * {@code STREAM_MAX_CONCURRENCY} queries are streamed at once, further ones are rejected with
+   * {@link RejectedExecutionException} before anything is written.
+   */
+  private void forEachRow(
+      Function<DSLContext, ResultQuery<? extends Record>> query, Consumer<Record> action) {
+    if (!STREAMS.tryAcquire()) {
+      throw new RejectedExecutionException("Too many streamed listings and exports");
+    }
+
+    try {
+      create.transaction(
+          configuration -> {
+            try (var cursor =
+                query.apply(DSL.using(configuration)).fetchSize(STREAM_FETCH_SIZE).fetchLazy()) {
+              for (var r : cursor) {
+                action.accept(r);
+              }
+            }
+          });
+    } finally {
+      STREAMS.release();
+    }
+  }
+
+  /**
+   * Groups rows of a child table by the id of the entity that owns them, keeping row order. The
+   * rows are ordered by owner id, so each group is a run of rows mapped into a list of its size.
+   * Should an owner have several runs, they are appended to its list.
+   */
+  static <R extends Record, T> Map<Integer, List<T>> group(
+      Result<R> rs, Field<Integer> ownerId, Function<? super R, T> mapper) {
+    Map<Integer, List<T>> groups = new HashMap<>();
+    int from = 0;
+    while (from < rs.size()) {
+      var id = rs.get(from).get(ownerId);
+      int to = from + 1;
+      while (to < rs.size() && id.equals(rs.get(to).get(ownerId))) {
+        to++;
+      }
+
+      List<T> group = new ArrayList<>(to - from);
+      for (int i = from; i < to; i++) {
+        group.add(mapper.apply(rs.get(i)));
+      }
+      var previous = groups.putIfAbsent(id, group);
+      if (previous != null) {
+        previous.addAll(group);
+      }
+      from = to;
+    }
+    return groups;
+  }
+
+  /** The rows ordered by release id and track offset, sorting them in place if they are not. */
+  private static <R extends Record> Result<R> sortedByTrack(
+      Result<R> rows, Field<Integer> releaseId, Field<Integer> trackOfst) {
+    Comparator<R> order =
+        Comparator.comparing((R r) -> r.get(releaseId)).thenComparing(r -> r.get(trackOfst));
+    for (int i = 1; i < rows.size(); i++) {
+      if (order.compare(rows.get(i - 1), rows.get(i)) > 0) {
+        return rows.sortAsc(order);
+      }
+    }
+    return rows;
+  }
+
+  /** A cursor over the rows of a track child table, ordered by release id and track offset. */
+  private static class TrackRows<R extends Record, T> {
+
+    private final Result<R> rows;
+    private final Field<Integer> releaseId;
+    private final Field<Integer> trackOfst;
+    private final Function<? super R, T> mapper;
+    private int next;
+
+    TrackRows(
+        Result<R> rows,
+        Field<Integer> releaseId,
+        Field<Integer> trackOfst,
+        Function<? super R, T> mapper) {
+      this.rows = sortedByTrack(rows, releaseId, trackOfst);
+      this.releaseId = releaseId;
+      this.trackOfst = trackOfst;
+      this.mapper = mapper;
+    }
+
+    /**
+     * Maps the rows of the track and moves past them, {@code null} if the track has none. Tracks
+     * must be taken in the order of the rows, rows of tracks that are never taken are skipped.
+     */
+    List<T> take(int release, int ofst) {
+      while (next < rows.size() && compareTo(next, release, ofst) < 0) {
+        next++;
+      }
+      int end = next;
+      while (end < rows.size() && compareTo(end, release, ofst) == 0) {
+        end++;
+      }
+      if (end == next) {
+        return null;
+      }
+
+      List<T> ofTrack = new ArrayList<>(end - next);
+      for (; next < end; next++) {
+        ofTrack.add(mapper.apply(rows.get(next)));
+      }
+      return ofTrack;
+    }
+
+    private int compareTo(int row, int release, int ofst) {
+      var r = rows.get(row);
+      int c = Integer.compare(r.get(releaseId), release);
+      return c != 0 ? c : Integer.compare(r.get(trackOfst), ofst);
+    }
+  }
+
+  /**
+   * Releases crediting the artist, ordered by release id. Pages are found by seeking past the last
+   * release id of the previous page on the {@code (ARTIST_ID, RELEASE_ID)} index, so deep pages are
+   * as cheap as the first one.
+   */
+  public CompletionStage<ArtistAssocsPaginated> findReleasesOfArtist(
+      Integer artistId, PageRequest pageRequest) {
+    var page =
         create
-            .selectFrom(LABELS)
-            .where(LABELS.ID.eq(labelId))
+            .selectDistinct(RELEASE_ARTIST_MAPS.RELEASE_ID)
+            .from(RELEASE_ARTIST_MAPS)
+            .where(RELEASE_ARTIST_MAPS.ARTIST_ID.eq(artistId))
+            .and(RELEASE_ARTIST_MAPS.RELEASE_ID.gt(pageRequest.getPrevious()))
+            .orderBy(RELEASE_ARTIST_MAPS.RELEASE_ID)
+            .limit(pageRequest.getTotal())
+            .asTable("page");
+
+    var releasesFuture =
+        create
+            .select(
+                RELEASES.ID,
+                RELEASES.TITLE,
+                RELEASES.STATUS,
+                RELEASES.RELEASED,
+                ARTIST_CREDIT,
+                FIRST_LABEL_NAME,
+                FIRST_FORMAT_NAME)
+            .from(page)
+            .join(RELEASES)
+            .on(RELEASES.ID.eq(page.field(RELEASE_ARTIST_MAPS.RELEASE_ID)))
+            .orderBy(RELEASES.ID)
             .fetchAsync()
-            .thenApply(rs -> rs.isNotEmpty() ? rs.get(0) : null);
+            .thenApply(
+                rs -> {
+                  List<ArtistAssoc> releases = new ArrayList<>(rs.size());
+                  for (var r : rs) {
+                    var release = new ArtistReleaseAssoc();
+                    release.setId(r.get(RELEASES.ID));
+                    release.setTitle(r.get(RELEASES.TITLE));
+                    release.setStatus(r.get(RELEASES.STATUS));
+                    release.setYear(parseYear(r.get(RELEASES.RELEASED)));
+                    release.setArtist(r.get(ARTIST_CREDIT));
+                    release.setLabel(r.get(FIRST_LABEL_NAME));
+                    release.setFormat(r.get(FIRST_FORMAT_NAME));
+                    release.setRole("Main");
+                    releases.add(release);
+                  }
+                  return releases;
+                });
 
-    return labelFuture.thenCompose(
-        labelRecord -> {
-          if (labelRecord == null) {
-            return CompletableFuture.completedFuture(null);
-          }
+    var statsFuture =
+        fetchPageStats(
+            create
+                .selectDistinct(RELEASE_ARTIST_MAPS.RELEASE_ID)
+                .from(RELEASE_ARTIST_MAPS)
+                .where(RELEASE_ARTIST_MAPS.ARTIST_ID.eq(artistId)),
+            RELEASE_ARTIST_MAPS.RELEASE_ID,
+            pageRequest);
 
-          var subLabelsFuture =
-              create
-                  .select(LABEL_SUBLABELS.LABEL2_ID, LABEL_SUBLABELS.NAME)
-                  .from(LABEL_SUBLABELS)
-                  .where(LABEL_SUBLABELS.LABEL_ID.eq(labelId))
-                  .orderBy(LABEL_SUBLABELS.OFST)
-                  .fetchAsync()
-                  .thenApply(
-                      rs ->
-                          rs.map(
-                              r -> {
-                                var subLabelDto = new SubLabel();
-                                subLabelDto.setId(r.get(LABEL_SUBLABELS.LABEL2_ID));
-                                subLabelDto.setName(r.get(LABEL_SUBLABELS.NAME));
-                                return subLabelDto;
-                              }))
-                  .toCompletableFuture();
-
-          var urlsFuture =
-              create
-                  .select(LABEL_URLS.URL)
-                  .from(LABEL_URLS)
-                  .where(LABEL_URLS.LABEL_ID.eq(labelId))
-                  .orderBy(LABEL_URLS.OFST)
-                  .fetchAsync()
-                  .thenApply(rs -> rs.map(r -> r.get(LABEL_URLS.URL)))
-                  .toCompletableFuture();
-
-          return CompletableFuture.allOf(subLabelsFuture, urlsFuture)
-              .thenApply(
-                  Void -> {
-                    var label = new Label();
-                    label.setId(labelId);
-                    label.setName(labelRecord.getName());
-                    label.setProfile(labelRecord.getProfile());
-                    label.setDataQuality(labelRecord.getDataQuality());
-                    label.setContactInfo(labelRecord.getContactInfo());
-                    label.setSublabels(subLabelsFuture.join());
-                    label.setUrls(urlsFuture.join());
-                    return label;
-                  });
+    return releasesFuture.thenCombine(
+        statsFuture,
+        (releases, stats) -> {
+          var paginated = new ArtistAssocsPaginated();
+          paginated.setReleases(releases);
+          paginated.setPagination(
+              paginate(
+                  String.format("artists/%d/releases", artistId),
+                  pageRequest,
+                  stats,
+                  releases.isEmpty() ? null : releases.get(releases.size() - 1).getId()));
+          return paginated;
         });
   }
 
-  public CompletionStage<Master> findMasterById(Integer masterId) {
+  /** Releases of the master, ordered by release id and paginated like the artist releases. */
+  public CompletionStage<MasterVersionsPaginated> findMVersionsOfMaster(
+      Integer masterId, PageRequest pageRequest) {
+    var versionsFuture =
+        masterVersions(create, masterId, pageRequest.getPrevious(), pageRequest.getTotal())
+            .fetchAsync()
+            .thenApply(
+                rs -> {
+                  List<MasterVersion> versions = new ArrayList<>(rs.size());
+                  for (var r : rs) {
+                    versions.add(toMasterVersion(r));
+                  }
+                  return versions;
+                });
+
+    var statsFuture =
+        fetchPageStats(
+            create.select(RELEASES.ID).from(RELEASES).where(RELEASES.MASTER_ID.eq(masterId)),
+            RELEASES.ID,
+            pageRequest);
+
+    return versionsFuture.thenCombine(
+        statsFuture,
+        (versions, stats) -> {
+          var paginated = new MasterVersionsPaginated();
+          paginated.setReleases(versions);
+          paginated.setPagination(
+              paginate(
+                  String.format("masters/%d/versions", masterId),
+                  pageRequest,
+                  stats,
+                  versions.isEmpty() ? null : versions.get(versions.size() - 1).getId()));
+          return paginated;
+        });
+  }
+
+  /**
+   * Passes every release of the master after {@code previous} to the consumer, reading them from a
+   * server-side cursor so that memory use does not depend on the number of releases. Blocks the
+   * calling thread.
+   */
+  public void streamVersionsOfMaster(
+      Integer masterId, Integer previous, Consumer<? super MasterVersion> consumer) {
+    forEachRow(
+        dsl -> masterVersions(dsl, masterId, previous, null),
+        r -> consumer.accept(toMasterVersion(r)));
+  }
+
+  /** Releases of the label, ordered by release id and paginated like the artist releases. */
+  public CompletionStage<LabelReleasesPaginated> findReleasesOfLabel(
+      Integer labelId, PageRequest pageRequest) {
+    var releasesFuture =
+        labelReleases(create, labelId, pageRequest.getPrevious(), pageRequest.getTotal())
+            .fetchAsync()
+            .thenApply(
+                rs -> {
+                  List<LabelRelease> releases = new ArrayList<>(rs.size());
+                  for (var r : rs) {
+                    releases.add(toLabelRelease(r));
+                  }
+                  return releases;
+                });
+
+    var statsFuture =
+        fetchPageStats(
+            create
+                .selectDistinct(RELEASE_LABELS.RELEASE_ID)
+                .from(RELEASE_LABELS)
+                .where(RELEASE_LABELS.LABEL_ID.eq(labelId)),
+            RELEASE_LABELS.RELEASE_ID,
+            pageRequest);
+
+    return releasesFuture.thenCombine(
+        statsFuture,
+        (releases, stats) -> {
+          var paginated = new LabelReleasesPaginated();
+          paginated.setReleases(releases);
+          paginated.setPagination(
+              paginate(
+                  String.format("labels/%d/releases", labelId),
+                  pageRequest,
+                  stats,
+                  releases.isEmpty() ? null : releases.get(releases.size() - 1).getId()));
+          return paginated;
+        });
+  }
+
+  /**
+   * Passes every release of the label after {@code previous} to the consumer, reading them from a
+   * server-side cursor so that memory use does not depend on the size of the label. Blocks the
+   * calling thread.
+   */
+  public void streamReleasesOfLabel(
+      Integer labelId, Integer previous, Consumer<? super LabelRelease> consumer) {
+    forEachRow(
+        dsl -> labelReleases(dsl, labelId, previous, null),
+        r -> consumer.accept(toLabelRelease(r)));
+  }
+
+  /**
+   * Projection of the master releases after {@code previous}, seeking on the {@code (MASTER_ID,
+   * ID)} index. A {@code null} limit selects all of them.
+   */
+  private static ResultQuery<? extends Record> masterVersions(
+      DSLContext create, Integer masterId, Integer previous, Integer limit) {
+    SelectLimitStep<? extends Record> query =
+        create
+            .select(
+                RELEASES.ID,
+                RELEASES.STATUS,
+                RELEASES.TITLE,
+                RELEASES.COUNTRY,
+                RELEASES.RELEASED,
+                FIRST_LABEL_NAME,
+                FIRST_LABEL_CATNO,
+                FORMAT_NAMES)
+            .from(RELEASES)
+            .where(RELEASES.MASTER_ID.eq(masterId))
+            .and(RELEASES.ID.gt(previous))
+            .orderBy(RELEASES.ID);
+    return limit != null ? query.limit(limit) : query;
+  }
+
+  /**
+   * Projection of the label releases after {@code previous}, seeking on the {@code (LABEL_ID,
+   * RELEASE_ID)} index. A release listed under the label more than once appears once, with the
+   * catalog number of its first listing. A {@code null} limit selects all of them.
+   */
+  private static ResultQuery<? extends Record> labelReleases(
+      DSLContext create, Integer labelId, Integer previous, Integer limit) {
+    SelectLimitStep<Record2<Integer, String>> pageQuery =
+        create
+            .select(
+                RELEASE_LABELS.RELEASE_ID,
+                DSL.field(
+                        "(array_agg({0} order by {1}))[1]",
+                        String.class,
+                        RELEASE_LABELS.CATNO,
+                        RELEASE_LABELS.OFST)
+                    .as(RELEASE_LABELS.CATNO.getName()))
+            .from(RELEASE_LABELS)
+            .where(RELEASE_LABELS.LABEL_ID.eq(labelId))
+            .and(RELEASE_LABELS.RELEASE_ID.gt(previous))
+            .groupBy(RELEASE_LABELS.RELEASE_ID)
+            .orderBy(RELEASE_LABELS.RELEASE_ID);
+    Select<Record2<Integer, String>> limited = limit != null ? pageQuery.limit(limit) : pageQuery;
+    var page = limited.asTable("page");
+
     return create
-        .select(MASTERS.MAIN_RELEASE_ID)
-        .from(MASTERS)
-        .where(MASTERS.ID.eq(masterId))
+        .select(
+            RELEASES.ID,
+            RELEASES.STATUS,
+            RELEASES.TITLE,
+            RELEASES.RELEASED,
+            ARTIST_CREDIT,
+            FORMAT_NAMES,
+            page.field(RELEASE_LABELS.CATNO))
+        .from(page)
+        .join(RELEASES)
+        .on(RELEASES.ID.eq(page.field(RELEASE_LABELS.RELEASE_ID)))
+        .orderBy(RELEASES.ID);
+  }
+
+  private static MasterVersion toMasterVersion(Record r) {
+    var version = new MasterVersion();
+    version.setId(r.get(RELEASES.ID));
+    version.setStatus(r.get(RELEASES.STATUS));
+    version.setTitle(r.get(RELEASES.TITLE));
+    version.setCountry(r.get(RELEASES.COUNTRY));
+    version.setReleased(r.get(RELEASES.RELEASED));
+    version.setLabel(r.get(FIRST_LABEL_NAME));
+    version.setCatno(r.get(FIRST_LABEL_CATNO));
+    var formats = distinctFormats(r.get(FORMAT_NAMES));
+    if (!formats.isEmpty()) {
+      version.setFormat(String.join(", ", formats));
+      version.setMajorFormats(formats);
+    }
+    return version;
+  }
+
+  private static LabelRelease toLabelRelease(Record r) {
+    var release = new LabelRelease();
+    release.setId(r.get(RELEASES.ID));
+    release.setStatus(r.get(RELEASES.STATUS));
+    release.setTitle(r.get(RELEASES.TITLE));
+    var year = parseYear(r.get(RELEASES.RELEASED));
+    release.setYear(year != null ? year.toString() : null);
+    release.setArtist(r.get(ARTIST_CREDIT));
+    release.setCatno(r.get(RELEASE_LABELS.CATNO.getName(), String.class));
+    var formats = distinctFormats(r.get(FORMAT_NAMES));
+    if (!formats.isEmpty()) {
+      release.setFormat(String.join(", ", formats));
+    }
+    return release;
+  }
+
+  private static List<String> distinctFormats(String[] names) {
+    if (names == null) {
+      return List.of();
+    }
+    return Arrays.stream(names).filter(Objects::nonNull).distinct().collect(toList());
+  }
+
+  /**
+   * Search results ordered by rank and then by id. A page holds the results after the {@code
+   * after} cursor, which is the rank and id of the last result of the previous page, so it is not
+   * counted how many results there are in total.
+   */
+  public CompletionStage<SearchResultsPaginated> search(
+      SearchRequest searchRequest, PageRequest pageRequest) {
+    var type = searchRequest.toSearchType();
+    var hits = searchHits(type, searchRequest.getQ());
+    if (hits == null) {
+      return CompletableFuture.completedFuture(
+          toSearchResults(searchRequest, pageRequest, List.of(), null));
+    }
+
+    var hitsTable = hits.asTable("hits");
+    var id = DSL.field(DSL.name("hits", "id"), Integer.class);
+    var title = DSL.field(DSL.name("hits", "title"), String.class);
+    var rank = DSL.field(DSL.name("hits", "rank"), Float.class);
+
+    var afterRank = searchRequest.afterRank();
+    var afterId = searchRequest.afterId();
+    var after =
+        afterRank != null
+            ? rank.lt(afterRank).or(rank.eq(afterRank).and(id.gt(afterId)))
+            : DSL.trueCondition();
+
+    return create
+        .select(id, title, rank)
+        .from(hitsTable)
+        .where(after)
+        .orderBy(rank.desc(), id)
+        .limit(pageRequest.getTotal() + 1)
         .fetchAsync()
         .thenApply(
             rs -> {
-              if (rs.isEmpty()) {
-                return null;
+              int pageSize = Math.min(rs.size(), pageRequest.getTotal());
+              List<SearchResult> results = new ArrayList<>(pageSize);
+              for (var r : rs.subList(0, pageSize)) {
+                var result = new SearchResult();
+                result.setType(type.getResultType());
+                result.setId(r.value1());
+                result.setTitle(r.value2());
+                results.add(result);
               }
 
-              var r = rs.get(0);
-              var master = new Master();
-              master.setId(masterId);
-              master.setMainReleaseId(r.getValue(MASTERS.MAIN_RELEASE_ID));
-              return master;
+              String next = null;
+              if (rs.size() > pageSize) {
+                var last = rs.get(pageSize - 1);
+                next = SearchRequest.cursor(last.value3(), last.value1());
+              }
+              return toSearchResults(searchRequest, pageRequest, results, next);
             });
   }
 
-  public CompletionStage<ArtistAssocsPaginated> findReleasesOfArtist(Integer artistId) {
-    // TODO
-    return null;
+  /** A page of search results, {@code next} is the cursor of the next page if there is one. */
+  static SearchResultsPaginated toSearchResults(
+      SearchRequest searchRequest,
+      PageRequest pageRequest,
+      List<SearchResult> results,
+      String next) {
+    var urls = new PaginationUrls();
+    if (next != null) {
+      urls.setNext(
+          Responses.createSearchUrl(
+              searchRequest.getQ(), searchRequest.getType(), next, pageRequest.getTotal()));
+    }
+
+    var pagination = new Pagination();
+    pagination.setPerPage(pageRequest.getTotal());
+    pagination.setUrls(urls);
+
+    var paginated = new SearchResultsPaginated();
+    paginated.setPagination(pagination);
+    paginated.setResults(results);
+    return paginated;
+  }
+
+  /**
+   * Id, title and rank of all entities matching the query, or {@code null} if the query cannot
+   * match anything. The matching expressions are the ones indexed in {@code sql/indexes.sql}.
+   */
+  private static Select<Record3<Integer, String, Float>> searchHits(SearchType type, String q) {
+    switch (type) {
+      case ARTIST:
+        return textHits(ARTISTS, ARTISTS.ID, ARTISTS.NAME, q);
+      case RELEASE:
+        return textHits(RELEASES, RELEASES.ID, RELEASES.TITLE, q);
+      case MASTER:
+        return textHits(
+            MASTERS.join(RELEASES).on(RELEASES.ID.eq(MASTERS.MAIN_RELEASE_ID)),
+            MASTERS.ID,
+            RELEASES.TITLE,
+            q);
+      case LABEL:
+        return textHits(LABELS, LABELS.ID, LABELS.NAME, q);
+      case CATNO:
+        return catnoHits(q);
+      default:
+        throw new IllegalArgumentException(type.name());
+    }
+  }
+
+  /**
+   * Full text match of every word of the query, the last one as a prefix so that partially typed
+   * queries match. Ranked by {@code ts_rank} plus the trigram similarity of the whole text, which
+   * puts exact and near exact names first.
+   */
+  private static Select<Record3<Integer, String, Float>> textHits(
+      TableLike<?> from, Field<Integer> id, Field<String> text, String q) {
+    var prefixQuery = String.join(" & ", SearchIndex.words(q));
+    if (prefixQuery.isEmpty()) {
+      return null;
+    }
+    var tsQuery =
+        DSL.field("to_tsquery('simple', {0})", Object.class, DSL.val(prefixQuery + ":*"));
+
+    return DSL.select(
+            id.as("id"),
+            text.as("title"),
+            DSL.field(
+                    "ts_rank(to_tsvector('simple', {0}), {1}) + similarity({0}, {2})",
+                    Float.class,
+                    text,
+                    tsQuery,
+                    DSL.val(q))
+                .as("rank"))
+        .from(from)
+        .where(DSL.condition("to_tsvector('simple', {0}) @@ {1}", text, tsQuery));
   }
 
-  public CompletionStage<MasterVersionsPaginated> findMVersionsOfMaster(Integer masterId) {
-    // TODO
-    return null;
+  /**
+   * Releases with a catalog number starting with the query, exact matches first. Catalog numbers
+   * are compared without case, spaces and punctuation, so {@code wap 92} matches {@code WAP-92}.
+   */
+  private static Select<Record3<Integer, String, Float>> catnoHits(String q) {
+    var prefix = q.replaceAll("(?U)[^\\p{Alnum}]", "").toUpperCase(Locale.ROOT);
+    if (prefix.isEmpty()) {
+      return null;
+    }
+    var catno =
+        DSL.field(
+            "upper(regexp_replace({0}, '[^[:alnum:]]', '', 'g'))",
+            String.class,
+            RELEASE_LABELS.CATNO);
+
+    return DSL.select(
+            RELEASES.ID.as("id"),
+            RELEASES.TITLE.as("title"),
+            DSL.field(
+                    "max(case when {0} = {1} then 1 else 0.5 end)::real",
+                    Float.class,
+                    catno,
+                    DSL.val(prefix))
+                .as("rank"))
+        .from(RELEASE_LABELS)
+        .join(RELEASES)
+        .on(RELEASES.ID.eq(RELEASE_LABELS.RELEASE_ID))
+        // inlined, a bound pattern keeps generic plans from using the prefix index
+        .where(catno.like(DSL.inline(prefix + "%")))
+        .groupBy(RELEASES.ID, RELEASES.TITLE);
   }
 
-  public CompletionStage<MasterVersionsPaginated> findReleasesOfLabel(Integer labelId) {
-    // TODO
-    return null;
+  private <T> T readJson(String json, Class<T> type) {
+    try {
+      return objectMapper.readValue(json, type);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
-  public CompletionStage<Object> search() {
-    // TODO
-    return null;
+  /** How an entity and its child tables are fetched. */
+  public enum FetchMode {
+    /** One query for the entity row, then one query per child table. */
+    FANOUT,
+    /**
+     * A single statement aggregating the entity and its children into a json document. A missing
+     * id costs one query whose subqueries are never evaluated.
+     */
+    AGGREGATE,
+    /**
+     * For releases, the entity query and its child-table queries sent together as one
+     * multi-statement round trip, other entities are fetched as with {@link #FANOUT}.
+     */
+    PIPELINED
   }
 
   @ApplicationScoped
   public static class DSLContextProducer {
 
+    @Inject private MeterRegistry meterRegistry;
+
+    private HikariDataSource dataSource;
+    private QueryExecutor queryExecutor;
     private DSLContext dslContext;
 
     @PostConstruct
     public void init() {
-      String dbUser = System.getenv("DB_USER");
-      String dbPass = System.getenv("DB_PASSWORD");
-      String dbUrl = System.getenv("DB_URL");
-
-      try {
-        Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPass);
-        dslContext = DSL.using(conn);
-      } catch (SQLException e) {
-        throw new RuntimeException(e);
-      }
+      HikariConfig config = new HikariConfig();
+      config.setPoolName("discogs");
+      config.setJdbcUrl(Config.getString("DB_URL", null));
+      config.setUsername(Config.getString("DB_USER", null));
+      config.setPassword(Config.getString("DB_PASSWORD", null));
+      config.setMinimumIdle(Config.getInt("DB_POOL_MIN_IDLE", 2));
+      config.setMaximumPoolSize(Config.getInt("DB_POOL_MAX_SIZE", 16));
+      config.setConnectionTimeout(Config.getLong("DB_POOL_ACQUIRE_TIMEOUT_MS", 5_000));
+      config.setValidationTimeout(Config.getLong("DB_POOL_VALIDATION_TIMEOUT_MS", 1_000));
+      config.setIdleTimeout(Config.getLong("DB_POOL_IDLE_TIMEOUT_MS", 600_000));
+      config.setMaxLifetime(Config.getLong("DB_POOL_MAX_LIFETIME_MS", 1_800_000));
+      config.setMetricRegistry(meterRegistry);
+      // server-side prepared statements, parsed and planned once per connection
+      config.addDataSourceProperty("prepareThreshold", Config.getInt("DB_PREPARE_THRESHOLD", 1));
+      config.addDataSourceProperty(
+          "preparedStatementCacheQueries", Config.getInt("DB_STATEMENT_CACHE_QUERIES", 256));
+      config.addDataSourceProperty(
+          "preparedStatementCacheSizeMiB", Config.getInt("DB_STATEMENT_CACHE_SIZE_MIB", 5));
+
+      dataSource = new HikariDataSource(config);
+      queryExecutor = QueryExecutor.create(config.getMaximumPoolSize(), meterRegistry);
+      var listeners =
+          DefaultExecuteListenerProvider.providers(
+              new QueryMetricsListener(meterRegistry), new QueryTraceListener());
+      dslContext =
+          DSL.using(
+              new DefaultConfiguration()
+                  .set(dataSource)
+                  .set(SQLDialect.POSTGRES)
+                  .set(queryExecutor)
+                  .set(listeners));
     }
 
     @Produces
@@ -567,7 +1830,8 @@ public class Repository {
 
     @PreDestroy
     public void destroy() {
-      dslContext.close();
+      queryExecutor.close();
+      dataSource.close();
     }
   }
 }
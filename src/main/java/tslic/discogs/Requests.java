@@ -1,20 +1,104 @@
 package tslic.discogs;
 
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 import javax.ws.rs.QueryParam;
 import lombok.Data;
 
 class Requests {
 
+  /**
+   * Keyset page request: {@code previous} is the last id of the previous page, or 0 for the first
+   * page, and {@code total} the number of items per page.
+   */
   @Data
   public static class PageRequest {
 
     @QueryParam("previous")
-    @Min(1)
+    @Min(0)
     Integer previous = 0;
 
     @QueryParam("total")
     @Min(1)
+    @Max(100)
     Integer total = 10;
+
+    /** Whether to return all items after {@code previous} unpaginated, ignoring {@code total}. */
+    @QueryParam("stream")
+    Boolean stream = false;
+  }
+
+  /**
+   * Search request: {@code q} is the query, {@code type} one of the {@link SearchType}s in lower
+   * case and {@code after} the opaque cursor of the last result of the previous page.
+   */
+  @Data
+  public static class SearchRequest {
+
+    @QueryParam("q")
+    @NotNull
+    @Size(min = 1, max = 200)
+    String q;
+
+    @QueryParam("type")
+    @Pattern(regexp = "artist|release|master|label|catno")
+    String type = "release";
+
+    @QueryParam("after")
+    @Pattern(regexp = "\\d{1,2}\\.\\d{1,9}(E-?\\d{1,2})?:[1-9]\\d{0,8}")
+    String after;
+
+    public SearchType toSearchType() {
+      return SearchType.valueOf(type.toUpperCase(Locale.ROOT));
+    }
+
+    /** Rank of the last result of the previous page, {@code null} for the first page. */
+    public Float afterRank() {
+      return after != null ? Float.valueOf(after.substring(0, after.indexOf(':'))) : null;
+    }
+
+    /** Id of the last result of the previous page, {@code null} for the first page. */
+    public Integer afterId() {
+      return after != null ? Integer.valueOf(after.substring(after.indexOf(':') + 1)) : null;
+    }
+
+    static String cursor(Float rank, Integer id) {
+      return rank + ":" + id;
+    }
+  }
+
+  /** Inclusive id range, e.g. {@code from=1&to=1000}. */
+  @Data
+  public static class IdRangeRequest {
+
+    @QueryParam("from")
+    @Min(1)
+    Integer from = 1;
+
+    @QueryParam("to")
+    @Min(1)
+    Integer to = Integer.MAX_VALUE;
+  }
+
+  @Data
+  public static class IdsRequest {
+
+    /** Comma separated ids, e.g. {@code ids=1,2,3}. */
+    @QueryParam("ids")
+    @NotNull
+    @Pattern(regexp = "[1-9]\\d{0,8}(,[1-9]\\d{0,8})*")
+    String ids;
+
+    public List<Integer> toIds() {
+      return Arrays.stream(ids.split(",")).map(Integer::valueOf).distinct().collect(toList());
+    }
   }
 }
@@ -1,21 +1,60 @@
 package tslic.discogs;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.BeanParam;
+import javax.ws.rs.ForbiddenException;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import tslic.discogs.Requests.IdRangeRequest;
+import tslic.discogs.Requests.IdsRequest;
 import tslic.discogs.Requests.PageRequest;
+import tslic.discogs.Requests.SearchRequest;
+import tslic.discogs.providers.ObjectMapperProvider;
 
 public class Resources {
 
+  private static final int BATCH_MAX_IDS = Config.getInt("BATCH_MAX_IDS", 50);
+
+  private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+  private static final ObjectWriter STREAM_WRITER =
+      ObjectMapperProvider.createObjectMapper()
+          .writer()
+          .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
   @RequestScoped
   @Path("artists")
   @Produces(MediaType.APPLICATION_JSON)
@@ -23,11 +62,27 @@ public class Resources {
 
     @Inject private Repository repository;
 
+    @Inject private EntitySource entitySource;
+
+    @Inject private Loaders loaders;
+
+    @Inject private EntityCache entityCache;
+
+    @Inject private ResponseCache responseCache;
+
+    @GET
+    public void getByIds(
+        @Valid @BeanParam IdsRequest idsRequest, @Suspended AsyncResponse asyncResponse) {
+      resume(
+          entityCache.getAll(EntityType.ARTIST, batchIds(idsRequest), entitySource::fetchArtists),
+          asyncResponse);
+    }
+
     @GET
     @Path("{artistId}")
     public void get(
         @PathParam("artistId") @Min(1) Integer artistId, @Suspended AsyncResponse asyncResponse) {
-      repository.findArtistById(artistId).thenAccept(asyncResponse::resume);
+      resume(responseCache.get(EntityType.ARTIST, artistId, loaders::artist), asyncResponse);
     }
 
     @GET
@@ -36,7 +91,7 @@ public class Resources {
         @PathParam("artistId") @Min(1) Integer artistId,
         @Valid @BeanParam PageRequest pageRequest,
         @Suspended AsyncResponse asyncResponse) {
-      repository.findReleasesOfArtist(artistId).thenAccept(asyncResponse::resume);
+      resume(repository.findReleasesOfArtist(artistId, pageRequest), asyncResponse);
     }
   }
 
@@ -47,10 +102,43 @@ public class Resources {
 
     @Inject private Repository repository;
 
+    @Inject private EntitySource entitySource;
+
+    @Inject private Loaders loaders;
+
+    @Inject private EntityCache entityCache;
+
+    @Inject private ResponseCache responseCache;
+
+    @GET
+    public void getByIds(
+        @Valid @BeanParam IdsRequest idsRequest, @Suspended AsyncResponse asyncResponse) {
+      resume(
+          entityCache.getAll(EntityType.LABEL, batchIds(idsRequest), entitySource::fetchLabels),
+          asyncResponse);
+    }
+
     @GET
     @Path("{labelId}")
     public void get(@PathParam("labelId") Integer labelId, @Suspended AsyncResponse asyncResponse) {
-      repository.findLabelById(labelId).thenAccept(asyncResponse::resume);
+      resume(responseCache.get(EntityType.LABEL, labelId, loaders::label), asyncResponse);
+    }
+
+    @GET
+    @Path("{labelId}/releases")
+    public void getReleases(
+        @PathParam("labelId") @Min(1) Integer labelId,
+        @Valid @BeanParam PageRequest pageRequest,
+        @Suspended AsyncResponse asyncResponse) {
+      if (pageRequest.getStream()) {
+        asyncResponse.resume(
+            streamReleases(
+                consumer ->
+                    repository.streamReleasesOfLabel(
+                        labelId, pageRequest.getPrevious(), consumer)));
+      } else {
+        resume(repository.findReleasesOfLabel(labelId, pageRequest), asyncResponse);
+      }
     }
   }
 
@@ -61,11 +149,44 @@ public class Resources {
 
     @Inject private Repository repository;
 
+    @Inject private EntitySource entitySource;
+
+    @Inject private Loaders loaders;
+
+    @Inject private EntityCache entityCache;
+
+    @Inject private ResponseCache responseCache;
+
+    @GET
+    public void getByIds(
+        @Valid @BeanParam IdsRequest idsRequest, @Suspended AsyncResponse asyncResponse) {
+      resume(
+          entityCache.getAll(EntityType.MASTER, batchIds(idsRequest), entitySource::fetchMasters),
+          asyncResponse);
+    }
+
     @GET
     @Path("{masterId}")
     public void get(
         @PathParam("masterId") @Min(1) Integer masterId, @Suspended AsyncResponse asyncResponse) {
-      repository.findMasterById(masterId).thenAccept(asyncResponse::resume);
+      resume(responseCache.get(EntityType.MASTER, masterId, loaders::master), asyncResponse);
+    }
+
+    @GET
+    @Path("{masterId}/versions")
+    public void getVersions(
+        @PathParam("masterId") @Min(1) Integer masterId,
+        @Valid @BeanParam PageRequest pageRequest,
+        @Suspended AsyncResponse asyncResponse) {
+      if (pageRequest.getStream()) {
+        asyncResponse.resume(
+            streamReleases(
+                consumer ->
+                    repository.streamVersionsOfMaster(
+                        masterId, pageRequest.getPrevious(), consumer)));
+      } else {
+        resume(repository.findMVersionsOfMaster(masterId, pageRequest), asyncResponse);
+      }
     }
   }
 
@@ -76,11 +197,326 @@ public class Resources {
 
     @Inject private Repository repository;
 
+    @Inject private EntitySource entitySource;
+
+    @Inject private Loaders loaders;
+
+    @Inject private EntityCache entityCache;
+
+    @Inject private ResponseCache responseCache;
+
+    @Inject private ReleaseStreams releaseStreams;
+
+    @GET
+    public void getByIds(
+        @Valid @BeanParam IdsRequest idsRequest, @Suspended AsyncResponse asyncResponse) {
+      resume(
+          entityCache.getAll(EntityType.RELEASE, batchIds(idsRequest), entitySource::fetchReleases),
+          asyncResponse);
+    }
+
+    /**
+     * Releases found to be huge by {@link ReleaseStreams} are written straight from the database by
+     * {@link Repository#writeRelease}, bypassing the caches, so that huge box sets are never held
+     * in memory as a whole. The tracks are only counted for releases that are not cached.
+     */
     @GET
     @Path("{releaseId}")
     public void get(
         @PathParam("releaseId") @Min(1) Integer releaseId, @Suspended AsyncResponse asyncResponse) {
-      repository.findReleaseById(releaseId).thenAccept(asyncResponse::resume);
+      if (!releaseStreams.isEnabled()) {
+        resume(responseCache.get(EntityType.RELEASE, releaseId, loaders::release), asyncResponse);
+        return;
+      }
+
+      if (releaseStreams.isHuge(releaseId)) {
+        streamRelease(releaseId, asyncResponse);
+        return;
+      }
+
+      var cached = responseCache.getIfPresent(EntityType.RELEASE, releaseId);
+      if (cached != null) {
+        resume(cached, asyncResponse);
+        return;
+      }
+
+      repository
+          .countTracks(releaseId)
+          .whenComplete(
+              (tracks, throwable) -> {
+                if (throwable != null) {
+                  resume(CompletableFuture.failedFuture(throwable), asyncResponse);
+                } else if (releaseStreams.isHuge(releaseId, tracks)) {
+                  streamRelease(releaseId, asyncResponse);
+                } else {
+                  resume(
+                      responseCache.get(EntityType.RELEASE, releaseId, loaders::release),
+                      asyncResponse);
+                }
+              });
+    }
+
+    /**
+     * Resumes the response on a stream thread, which is where Jersey then writes it, so that the
+     * query thread that counted the tracks is not held while the client reads. A failure partway
+     * leaves the release unterminated, never a complete release with a truncated tracklist.
+     */
+    private void streamRelease(Integer releaseId, AsyncResponse asyncResponse) {
+      StreamingOutput stream =
+          output -> {
+            try (var generator = streamGenerator(output)) {
+              if (!repository.writeRelease(releaseId, generator, STREAM_WRITER)) {
+                throw new NotFoundException();
+              }
+            } catch (UncheckedIOException e) {
+              throw e.getCause();
+            }
+          };
+
+      try {
+        releaseStreams.execute(() -> asyncResponse.resume(stream));
+      } catch (RejectedExecutionException e) {
+        asyncResponse.resume(e);
+      }
+    }
+  }
+
+  @RequestScoped
+  @Path("database")
+  @Produces(MediaType.APPLICATION_JSON)
+  public static class Search {
+
+    @Inject private Repository repository;
+
+    @Inject private SearchIndex searchIndex;
+
+    @GET
+    @Path("search")
+    public void search(
+        @Valid @BeanParam SearchRequest searchRequest,
+        @Valid @BeanParam PageRequest pageRequest,
+        @Suspended AsyncResponse asyncResponse) {
+      var indexed = searchIndex.search(searchRequest, pageRequest);
+      if (indexed.isPresent()) {
+        asyncResponse.resume(indexed.get());
+      } else {
+        resume(repository.search(searchRequest, pageRequest), asyncResponse);
+      }
+    }
+  }
+
+  /**
+   * Whole slices of the database as newline delimited json, one entity per line in id order. The
+   * entities are read from a server-side cursor and written as they arrive, so memory use does not
+   * depend on the size of the slice and a slow client slows down the cursor.
+   */
+  @RequestScoped
+  @Path("export")
+  @Produces(APPLICATION_NDJSON)
+  public static class Exports {
+
+    @Inject private Repository repository;
+
+    @GET
+    @Path("artists")
+    public StreamingOutput getArtists(@Valid @BeanParam IdRangeRequest range) {
+      return streamNdjson(
+          consumer -> repository.exportArtists(range.getFrom(), range.getTo(), consumer));
+    }
+
+    @GET
+    @Path("labels")
+    public StreamingOutput getLabels(@Valid @BeanParam IdRangeRequest range) {
+      return streamNdjson(
+          consumer -> repository.exportLabels(range.getFrom(), range.getTo(), consumer));
+    }
+
+    @GET
+    @Path("labels/{labelId}/releases")
+    public StreamingOutput getReleasesOfLabel(@PathParam("labelId") @Min(1) Integer labelId) {
+      return streamNdjson(consumer -> repository.exportReleasesOfLabel(labelId, consumer));
+    }
+
+    @GET
+    @Path("masters")
+    public StreamingOutput getMasters(@Valid @BeanParam IdRangeRequest range) {
+      return streamNdjson(
+          consumer -> repository.exportMasters(range.getFrom(), range.getTo(), consumer));
+    }
+
+    @GET
+    @Path("releases")
+    public StreamingOutput getReleases(@Valid @BeanParam IdRangeRequest range) {
+      return streamNdjson(
+          consumer -> repository.exportReleases(range.getFrom(), range.getTo(), consumer));
+    }
+  }
+
+  @RequestScoped
+  @Path("metrics")
+  @Produces(MediaType.TEXT_PLAIN)
+  public static class Monitoring {
+
+    @Inject private PrometheusMeterRegistry meterRegistry;
+
+    @GET
+    public String get() {
+      return meterRegistry.scrape();
+    }
+  }
+
+  private static List<Integer> batchIds(IdsRequest idsRequest) {
+    var ids = idsRequest.toIds();
+    if (ids.size() > BATCH_MAX_IDS) {
+      throw new BadRequestException(
+          Response.status(Response.Status.BAD_REQUEST)
+              .entity(String.format("ids must not contain more than %d ids\n", BATCH_MAX_IDS))
+              .type("text/plain")
+              .build());
+    }
+    return ids;
+  }
+
+  @RequestScoped
+  @Path("admin")
+  public static class Admin {
+
+    private static final String ADMIN_TOKEN = Config.getString("ADMIN_TOKEN", null);
+
+    @Inject private EntityCache entityCache;
+
+    @Inject private ResponseCache responseCache;
+
+    @Inject private ReleaseStreams releaseStreams;
+
+    @Inject private DumpVersion dumpVersion;
+
+    @Inject private SearchIndex searchIndex;
+
+    /**
+     * Drops all cached entities and responses, switches validators to a new dump version and
+     * rebuilds the search index, call after a new dump has been loaded.
+     */
+    @POST
+    @Path("caches/invalidate")
+    public void invalidateCaches(
+        @HeaderParam(HttpHeaders.AUTHORIZATION) String authorization,
+        @QueryParam("dumpVersion") @Pattern(regexp = "[A-Za-z0-9._]+") String version) {
+      authorize(authorization);
+      entityCache.invalidateAll();
+      responseCache.invalidateAll();
+      releaseStreams.invalidateAll();
+      dumpVersion.update(version);
+      searchIndex.rebuild();
     }
+
+    private static void authorize(String authorization) {
+      if (!isAuthorized(authorization)) {
+        throw new ForbiddenException();
+      }
+    }
+
+    /** Whether the {@code Authorization} header carries the admin token. */
+    public static boolean isAuthorized(String authorization) {
+      return ADMIN_TOKEN != null
+          && authorization != null
+          && MessageDigest.isEqual(
+              ("Bearer " + ADMIN_TOKEN).getBytes(StandardCharsets.UTF_8),
+              authorization.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Writes {@code {"releases": [...]}} while the source passes the releases to its consumer, one
+   * release at a time, instead of collecting them first. Nothing is written before the first
+   * release arrives or the source returns, so a listing rejected or failing before its first row
+   * still gets its error status.
+   */
+  private static StreamingOutput streamReleases(Consumer<Consumer<Object>> source) {
+    return output -> {
+      try (var generator = streamGenerator(output)) {
+        var opened = new AtomicBoolean();
+        Runnable open =
+            () -> {
+              if (opened.compareAndSet(false, true)) {
+                try {
+                  generator.writeStartObject();
+                  generator.writeArrayFieldStart("releases");
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              }
+            };
+        var releaseWriter = valueWriter(generator, "");
+        source.accept(
+            release -> {
+              open.run();
+              releaseWriter.accept(release);
+            });
+        open.run();
+        generator.writeEndArray();
+        generator.writeEndObject();
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
+  }
+
+  /**
+   * Writes every value the source passes to its consumer as a line of json. A value failing to
+   * serialize is left unterminated, so that its partial line does not parse.
+   */
+  static StreamingOutput streamNdjson(Consumer<Consumer<Object>> source) {
+    return output -> {
+      try (var generator = streamGenerator(output)) {
+        generator.setRootValueSeparator(null);
+        source.accept(valueWriter(generator, "\n"));
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    };
+  }
+
+  /**
+   * A generator for streamed responses. Closing it after a failure leaves the open objects and
+   * arrays open, so that a truncated response is invalid json rather than a plausible document.
+   */
+  private static JsonGenerator streamGenerator(OutputStream output) throws IOException {
+    return STREAM_WRITER
+        .getFactory()
+        .createGenerator(output)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+  }
+
+  /**
+   * Writes each value followed by the suffix. Write failures, such as a disconnected client, are
+   * rethrown unchecked so that they abort the source.
+   */
+  private static Consumer<Object> valueWriter(JsonGenerator generator, String suffix) {
+    return value -> {
+      try {
+        STREAM_WRITER.writeValue(generator, value);
+        generator.writeRaw(suffix);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    };
+  }
+
+  /**
+   * Resumes the suspended response with the stage result, or with its failure so that it reaches
+   * the registered exception mappers instead of leaving the request hanging.
+   */
+  private static void resume(CompletionStage<?> stage, AsyncResponse asyncResponse) {
+    stage.whenComplete(
+        (result, throwable) -> {
+          if (throwable == null) {
+            asyncResponse.resume(result);
+          } else if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            asyncResponse.resume(throwable.getCause());
+          } else {
+            asyncResponse.resume(throwable);
+          }
+        });
   }
 }
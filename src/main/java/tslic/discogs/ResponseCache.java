@@ -0,0 +1,123 @@
+package tslic.discogs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import tslic.discogs.EntityCache.Key;
+import tslic.discogs.providers.ObjectMapperProvider;
+
+/**
+ * Serialized response bodies of single entities keyed by entity type and id, so that a hit skips
+ * Jackson entirely. Misses, and every request when disabled, take the entity from the {@link
+ * EntityCache}, so that an entity loaded by a batch endpoint is not fetched again for its single
+ * response and the other way around.
+ */
+@ApplicationScoped
+public class ResponseCache {
+
+  private static final int MISSING_WEIGHT = 64;
+
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+  private final EntityCache entityCache;
+  private final boolean gzip;
+  private final int gzipMinBytes;
+  private final AsyncCache<Key, Optional<JsonBytes>> cache;
+
+  @Inject
+  ResponseCache(EntityCache entityCache, MeterRegistry meterRegistry) {
+    this.entityCache = entityCache;
+    this.gzip = Config.getBoolean("RESPONSE_CACHE_GZIP", true);
+    this.gzipMinBytes = Config.getInt("RESPONSE_CACHE_GZIP_MIN_BYTES", 1024);
+
+    long maxBytes = Config.getLong("RESPONSE_CACHE_MAX_BYTES", 256L << 20);
+    if (maxBytes <= 0) {
+      cache = null;
+      return;
+    }
+
+    cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher(ResponseCache::weigh)
+            .recordStats()
+            .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "responses");
+  }
+
+  public <T> CompletionStage<JsonBytes> get(
+      EntityType type, Integer id, Function<Integer, CompletionStage<T>> loader) {
+    if (cache == null) {
+      return entityCache.get(type, id, loader).thenApply(this::serialize);
+    }
+
+    return cache
+        .get(
+            new Key(type, id),
+            (key, executor) ->
+                entityCache
+                    .get(type, id, loader)
+                    .thenApply(entity -> Optional.ofNullable(serialize(entity)))
+                    .toCompletableFuture())
+        .thenApply(jsonBytes -> jsonBytes.orElse(null));
+  }
+
+  /** The cached response, or {@code null} if it is not cached or the cache is disabled. */
+  public CompletionStage<JsonBytes> getIfPresent(EntityType type, Integer id) {
+    if (cache == null) {
+      return null;
+    }
+
+    var future = cache.getIfPresent(new Key(type, id));
+    return future != null ? future.thenApply(jsonBytes -> jsonBytes.orElse(null)) : null;
+  }
+
+  public void invalidateAll() {
+    if (cache != null) {
+      cache.synchronous().invalidateAll();
+    }
+  }
+
+  private JsonBytes serialize(Object entity) {
+    if (entity == null) {
+      return null;
+    }
+
+    try {
+      byte[] json = objectMapper.writeValueAsBytes(entity);
+      return new JsonBytes(json, gzip && json.length >= gzipMinBytes ? gzip(json) : null);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] gzip(byte[] json) {
+    var bytes = new ByteArrayOutputStream(json.length / 4);
+    try (var out = new GZIPOutputStream(bytes)) {
+      out.write(json);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static int weigh(Key key, Optional<JsonBytes> jsonBytes) {
+    if (jsonBytes.isEmpty()) {
+      return MISSING_WEIGHT;
+    }
+
+    var gzip = jsonBytes.get().getGzip();
+    return MISSING_WEIGHT + jsonBytes.get().getJson().length + (gzip != null ? gzip.length : 0);
+  }
+}
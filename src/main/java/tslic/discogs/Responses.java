@@ -3,6 +3,8 @@ package tslic.discogs;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -339,6 +341,29 @@ public class Responses {
     List<LabelRelease> releases;
   }
 
+  /** A search hit, just enough to show it and to fetch the entity from its resource url. */
+  @Data
+  public static class SearchResult {
+
+    Integer id;
+    String type;
+    String title;
+    URL resourceUrl;
+
+    /** Sets the id and the resource url, the type must be set first. */
+    public void setId(Integer id) {
+      this.id = id;
+      this.resourceUrl = createResourceUrl(type + "s", id);
+    }
+  }
+
+  @Data
+  public static class SearchResultsPaginated {
+
+    Pagination pagination;
+    List<SearchResult> results;
+  }
+
   @Data
   public static class Pagination {
 
@@ -364,7 +389,7 @@ public class Responses {
     }
   }
 
-  private static URL createReleaseResourceUrl(Integer releaseId) {
+  static URL createReleaseResourceUrl(Integer releaseId) {
     try {
       return new URL(String.format("%s/releases/%d", getBaseUrl(), releaseId));
     } catch (MalformedURLException e) {
@@ -388,6 +413,26 @@ public class Responses {
     }
   }
 
+  private static URL createResourceUrl(String collection, Integer id) {
+    try {
+      return new URL(String.format("%s/%s/%d", getBaseUrl(), collection, id));
+    } catch (MalformedURLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Url of the search results following the {@code after} cursor. */
+  static String createSearchUrl(String q, String type, String after, Integer total) {
+    return String.format(
+        "%s/database/search?q=%s&type=%s&after=%s&total=%d",
+        getBaseUrl(), URLEncoder.encode(q, StandardCharsets.UTF_8), type, after, total);
+  }
+
+  /** Url of a keyset paginated listing, {@code path} is relative to the base url. */
+  static String createPageUrl(String path, Integer previous, Integer total) {
+    return String.format("%s/%s?previous=%d&total=%d", getBaseUrl(), path, previous, total);
+  }
+
   private static String getBaseUrl() {
     return "https://api.discogs.com";
   }
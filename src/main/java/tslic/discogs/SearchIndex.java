@@ -0,0 +1,590 @@
+package tslic.discogs;
+
+import static tslic.discogs.Tables.ARTISTS;
+import static tslic.discogs.Tables.ARTIST_NAMEVARIATIONS;
+import static tslic.discogs.Tables.LABELS;
+import static tslic.discogs.Tables.RELEASES;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.jooq.DSLContext;
+import org.jooq.Record3;
+import org.jooq.ResultQuery;
+import org.jooq.impl.DSL;
+import tslic.discogs.Requests.PageRequest;
+import tslic.discogs.Requests.SearchRequest;
+import tslic.discogs.Responses.SearchResult;
+import tslic.discogs.Responses.SearchResultsPaginated;
+
+/**
+ * In-memory search over artist names and name variations, label names and release titles for
+ * typeahead traffic that would otherwise all hit PostgreSQL. Each indexed type keeps its documents
+ * in id order and a sorted dictionary of their words, each word with the ascending numbers of the
+ * documents containing it. A prefix is a contiguous range of the dictionary, found by binary
+ * search.
+ *
+ * <p>The types listed in {@code SEARCH_INDEX_TYPES} are indexed in the background at startup, or
+ * loaded from {@code SEARCH_INDEX_SNAPSHOT} if that file exists. Until then, and for types that are
+ * not indexed, {@link #search} returns empty and searches go to {@link Repository#search}.
+ */
+@Log4j2
+@ApplicationScoped
+public class SearchIndex {
+
+  private static final int SNAPSHOT_VERSION = 1;
+  private static final int FETCH_SIZE = 10_000;
+
+  /** Prefixes up to this many chars have their expansion ranked when the index is built. */
+  private static final int SHORT_PREFIX = 2;
+
+  /** Terms a prefix expands to at most, the ones in the most documents. */
+  private static final int MAX_PREFIX_TERMS = Config.getInt("SEARCH_INDEX_MAX_PREFIX_TERMS", 256);
+
+  /** Rank of a title equal to the query, above the highest share of matched words. */
+  private static final float EXACT_RANK = 2f;
+
+  /** Best hits first: higher rank, then lower id, the order of {@link Repository#search}. */
+  private static final Comparator<Hit> BEST_FIRST =
+      Comparator.comparingDouble(Hit::getRank).reversed().thenComparingInt(Hit::getId);
+
+  private final Provider<DSLContext> create;
+  private final Set<SearchType> types;
+  private final Path snapshot;
+  private final ExecutorService executor;
+
+  private volatile Map<SearchType, Index> indexes = Map.of();
+
+  @Inject
+  SearchIndex(Provider<DSLContext> dslContext) {
+    this.create = dslContext;
+
+    types = new TreeSet<>();
+    for (var type : Config.getString("SEARCH_INDEX_TYPES", "").split(",")) {
+      if (!type.isBlank()) {
+        types.add(SearchType.valueOf(type.trim().toUpperCase(Locale.ROOT)));
+      }
+    }
+    types.retainAll(Set.of(SearchType.ARTIST, SearchType.LABEL, SearchType.RELEASE));
+
+    var snapshotPath = Config.getString("SEARCH_INDEX_SNAPSHOT", null);
+    snapshot = snapshotPath != null ? Paths.get(snapshotPath) : null;
+
+    executor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "search-index");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+    if (types.isEmpty()) {
+      return;
+    }
+    executor.execute(
+        () -> {
+          if (snapshot != null && Files.exists(snapshot)) {
+            try {
+              indexes = readSnapshot(snapshot);
+              log.info("Loaded search index of {} from {}", indexes.keySet(), snapshot);
+              return;
+            } catch (IOException | RuntimeException e) {
+              log.warn("Could not load search index snapshot {}, rebuilding", snapshot, e);
+            }
+          }
+          build();
+        });
+  }
+
+  /** Rebuilds the index from the database in the background, call after a new dump is loaded. */
+  public void rebuild() {
+    if (!types.isEmpty()) {
+      executor.execute(this::build);
+    }
+  }
+
+  /**
+   * Searches like {@link Repository#search}, with the same cursors but a rank of its own: 2 for a
+   * title equal to the query, otherwise the share of the title words matched by the query. Empty
+   * if the type is not indexed or the index is not ready.
+   */
+  public Optional<SearchResultsPaginated> search(
+      SearchRequest searchRequest, PageRequest pageRequest) {
+    var type = searchRequest.toSearchType();
+    var index = indexes.get(type);
+    if (index == null) {
+      return Optional.empty();
+    }
+
+    var hits =
+        index.search(
+            searchRequest.getQ(),
+            searchRequest.afterRank(),
+            searchRequest.afterId(),
+            pageRequest.getTotal() + 1);
+
+    List<SearchResult> results = new ArrayList<>(hits.size());
+    for (var hit : hits.subList(0, Math.min(hits.size(), pageRequest.getTotal()))) {
+      var result = new SearchResult();
+      result.setType(type.getResultType());
+      result.setId(index.ids[hit.doc]);
+      result.setTitle(index.titles[hit.doc]);
+      results.add(result);
+    }
+
+    String next = null;
+    if (hits.size() > pageRequest.getTotal()) {
+      var last = hits.get(pageRequest.getTotal() - 1);
+      next = SearchRequest.cursor(last.rank, index.ids[last.doc]);
+    }
+    return Optional.of(Repository.toSearchResults(searchRequest, pageRequest, results, next));
+  }
+
+  /** Lower case words of a query or title, as matched by the search. */
+  static String[] words(String text) {
+    return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+        .filter(word -> !word.isEmpty())
+        .toArray(String[]::new);
+  }
+
+  private void build() {
+    try {
+      long start = System.nanoTime();
+      var dsl = create.get();
+      Map<SearchType, Index> built = new EnumMap<>(SearchType.class);
+      for (var type : types) {
+        var builder = new IndexBuilder();
+        dsl.transaction(
+            configuration -> {
+              try (var cursor =
+                  documents(DSL.using(configuration), type).fetchSize(FETCH_SIZE).fetchLazy()) {
+                for (var r : cursor) {
+                  builder.add(r.value1(), r.value2(), r.value3());
+                }
+              }
+            });
+        built.put(type, builder.build());
+      }
+      indexes = built;
+      log.info(
+          "Built search index of {} in {} ms", types, (System.nanoTime() - start) / 1_000_000);
+
+      if (snapshot != null) {
+        writeSnapshot(snapshot, built);
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("Could not build search index", e);
+    }
+  }
+
+  /** Id, title and further indexed names of the documents of a type, in id order. */
+  private static ResultQuery<Record3<Integer, String, String>> documents(
+      DSLContext create, SearchType type) {
+    switch (type) {
+      case ARTIST:
+        return create
+            .select(
+                ARTISTS.ID,
+                ARTISTS.NAME,
+                DSL.field(
+                    DSL.select(
+                            DSL.field(
+                                "string_agg({0}, ' ')",
+                                String.class,
+                                ARTIST_NAMEVARIATIONS.NAMEVARIATION))
+                        .from(ARTIST_NAMEVARIATIONS)
+                        .where(ARTIST_NAMEVARIATIONS.ARTIST_ID.eq(ARTISTS.ID))))
+            .from(ARTISTS)
+            .orderBy(ARTISTS.ID);
+      case LABEL:
+        return create
+            .select(LABELS.ID, LABELS.NAME, DSL.inline(null, String.class))
+            .from(LABELS)
+            .orderBy(LABELS.ID);
+      case RELEASE:
+        return create
+            .select(RELEASES.ID, RELEASES.TITLE, DSL.inline(null, String.class))
+            .from(RELEASES)
+            .orderBy(RELEASES.ID);
+      default:
+        throw new IllegalArgumentException(type.name());
+    }
+  }
+
+  /** Writes the snapshot next to its final location first, so readers never see a partial file. */
+  private static void writeSnapshot(Path path, Map<SearchType, Index> indexes) throws IOException {
+    var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (var out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeInt(indexes.size());
+      for (var entry : indexes.entrySet()) {
+        out.writeUTF(entry.getKey().name());
+        entry.getValue().write(out);
+      }
+    }
+    Files.move(
+        temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static Map<SearchType, Index> readSnapshot(Path path) throws IOException {
+    try (var in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+      int version = in.readInt();
+      if (version != SNAPSHOT_VERSION) {
+        throw new IOException("Unsupported search index snapshot version " + version);
+      }
+      Map<SearchType, Index> indexes = new EnumMap<>(SearchType.class);
+      for (int i = in.readInt(); i > 0; i--) {
+        var type = SearchType.valueOf(in.readUTF());
+        indexes.put(type, Index.read(in));
+      }
+      return indexes;
+    }
+  }
+
+  @PreDestroy
+  void close() {
+    executor.shutdownNow();
+  }
+
+  @Value
+  private static class Hit {
+
+    int doc;
+    float rank;
+    int id;
+  }
+
+  private static class Index {
+
+    /** Entity id of each document, ascending. */
+    final int[] ids;
+
+    final String[] titles;
+    /** Number of words of each title, at most 255. */
+    final byte[] wordCounts;
+    /** Hash of the words of each title joined by spaces, to find titles equal to the query. */
+    final int[] titleHashes;
+    /** Distinct words of all documents, sorted. */
+    final String[] terms;
+    /** Ascending numbers of the documents containing each term. */
+    final int[][] postings;
+    /** The terms each prefix of up to {@code SHORT_PREFIX} chars expands to. */
+    final Map<String, int[]> shortPrefixTerms = new HashMap<>();
+
+    Index(int[] ids, String[] titles, byte[] wordCounts, String[] terms, int[][] postings) {
+      this.ids = ids;
+      this.titles = titles;
+      this.wordCounts = wordCounts;
+      this.terms = terms;
+      this.postings = postings;
+
+      titleHashes = new int[titles.length];
+      for (int doc = 0; doc < titles.length; doc++) {
+        titleHashes[doc] = String.join(" ", words(titles[doc])).hashCode();
+      }
+      for (int length = 1; length <= SHORT_PREFIX; length++) {
+        int from = 0;
+        while (from < terms.length) {
+          int to = from + 1;
+          if (terms[from].length() >= length) {
+            var prefix = terms[from].substring(0, length);
+            while (to < terms.length && terms[to].startsWith(prefix)) {
+              to++;
+            }
+            shortPrefixTerms.put(prefix, mostFrequent(from, to));
+          }
+          from = to;
+        }
+      }
+    }
+
+    /**
+     * Documents containing every word of the query, the last one as a prefix, ordered best first
+     * and following the {@code after} cursor, at most {@code limit} of them.
+     */
+    List<Hit> search(String q, Float afterRank, Integer afterId, int limit) {
+      var words = words(q);
+      if (words.length == 0) {
+        return List.of();
+      }
+
+      int[] candidates = null;
+      for (int i = 0; i < words.length - 1; i++) {
+        int term = Arrays.binarySearch(terms, words[i]);
+        if (term < 0) {
+          return List.of();
+        }
+        candidates = candidates == null ? postings[term] : intersect(candidates, postings[term]);
+      }
+      candidates = withPrefix(candidates, words[words.length - 1]);
+
+      var exact = String.join(" ", words);
+      int exactHash = exact.hashCode();
+      var best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+      for (int doc : candidates) {
+        int wordCount = wordCounts[doc] & 0xff;
+        float rank =
+            wordCount == words.length
+                    && titleHashes[doc] == exactHash
+                    && exact.equals(String.join(" ", words(titles[doc])))
+                ? EXACT_RANK
+                : Math.min(1f, (float) words.length / Math.max(1, wordCount));
+        int id = ids[doc];
+        if (afterRank != null && (rank > afterRank || rank == afterRank && id <= afterId)) {
+          continue;
+        }
+        best.add(new Hit(doc, rank, id));
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+
+      List<Hit> hits = new ArrayList<>(best);
+      hits.sort(BEST_FIRST);
+      return hits;
+    }
+
+    /**
+     * The candidates containing a term starting with the prefix, or all such documents if there
+     * are no candidates yet. Only the {@code MAX_PREFIX_TERMS} terms in the most documents are
+     * expanded, so that a short prefix does not walk most of the dictionary.
+     */
+    private int[] withPrefix(int[] candidates, String prefix) {
+      int[] prefixTerms;
+      if (prefix.length() <= SHORT_PREFIX) {
+        prefixTerms = shortPrefixTerms.getOrDefault(prefix, new int[0]);
+      } else {
+        int from = Arrays.binarySearch(terms, prefix);
+        if (from < 0) {
+          from = -from - 1;
+        }
+        int to = from;
+        while (to < terms.length && terms[to].startsWith(prefix)) {
+          to++;
+        }
+        prefixTerms = mostFrequent(from, to);
+      }
+
+      if (candidates == null) {
+        var docs = new IntArrayBuilder();
+        for (int term : prefixTerms) {
+          docs.addAll(postings[term]);
+        }
+        return docs.toSortedDistinctArray();
+      }
+
+      var matched = new boolean[candidates.length];
+      for (int term : prefixTerms) {
+        var docs = postings[term];
+        for (int i = 0, j = 0; i < candidates.length && j < docs.length; ) {
+          if (candidates[i] < docs[j]) {
+            i++;
+          } else if (candidates[i] > docs[j]) {
+            j++;
+          } else {
+            matched[i++] = true;
+            j++;
+          }
+        }
+      }
+      var docs = new IntArrayBuilder();
+      for (int i = 0; i < candidates.length; i++) {
+        if (matched[i]) {
+          docs.add(candidates[i]);
+        }
+      }
+      return docs.toArray();
+    }
+
+    /**
+     * The terms of the range, or the {@code MAX_PREFIX_TERMS} of them in the most documents, the
+     * first term of the range always among them since it may equal the prefix.
+     */
+    private int[] mostFrequent(int from, int to) {
+      if (to - from <= MAX_PREFIX_TERMS) {
+        return IntStream.range(from, to).toArray();
+      }
+      return IntStream.concat(
+              IntStream.of(from),
+              IntStream.range(from + 1, to)
+                  .boxed()
+                  .sorted(Comparator.comparingInt(term -> -postings[term].length))
+                  .limit(MAX_PREFIX_TERMS - 1)
+                  .mapToInt(Integer::intValue))
+          .toArray();
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+      var docs = new IntArrayBuilder();
+      for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+        if (a[i] < b[j]) {
+          i++;
+        } else if (a[i] > b[j]) {
+          j++;
+        } else {
+          docs.add(a[i]);
+          i++;
+          j++;
+        }
+      }
+      return docs.toArray();
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(ids.length);
+      for (int doc = 0; doc < ids.length; doc++) {
+        out.writeInt(ids[doc]);
+        out.writeUTF(titles[doc]);
+        out.writeByte(wordCounts[doc]);
+      }
+      out.writeInt(terms.length);
+      for (int term = 0; term < terms.length; term++) {
+        out.writeUTF(terms[term]);
+        out.writeInt(postings[term].length);
+        for (int doc : postings[term]) {
+          out.writeInt(doc);
+        }
+      }
+    }
+
+    static Index read(DataInputStream in) throws IOException {
+      int docCount = in.readInt();
+      var ids = new int[docCount];
+      var titles = new String[docCount];
+      var wordCounts = new byte[docCount];
+      for (int doc = 0; doc < docCount; doc++) {
+        ids[doc] = in.readInt();
+        titles[doc] = in.readUTF();
+        wordCounts[doc] = in.readByte();
+      }
+      int termCount = in.readInt();
+      var terms = new String[termCount];
+      var postings = new int[termCount][];
+      for (int term = 0; term < termCount; term++) {
+        terms[term] = in.readUTF();
+        postings[term] = new int[in.readInt()];
+        for (int i = 0; i < postings[term].length; i++) {
+          postings[term][i] = in.readInt();
+        }
+      }
+      return new Index(ids, titles, wordCounts, terms, postings);
+    }
+  }
+
+  /** Collects documents in id order, so that postings come out ascending. */
+  private static class IndexBuilder {
+
+    private final IntArrayBuilder ids = new IntArrayBuilder();
+    private final List<String> titles = new ArrayList<>();
+    private final IntArrayBuilder wordCounts = new IntArrayBuilder();
+    private final Map<String, IntArrayBuilder> postings = new HashMap<>();
+
+    void add(int id, String title, String otherNames) {
+      int doc = ids.size();
+      var titleWords = words(title != null ? title : "");
+      ids.add(id);
+      titles.add(title != null ? title : "");
+      wordCounts.add(Math.min(titleWords.length, 255));
+
+      var docWords = new TreeSet<>(Arrays.asList(titleWords));
+      if (otherNames != null) {
+        docWords.addAll(Arrays.asList(words(otherNames)));
+      }
+      for (var word : docWords) {
+        postings.computeIfAbsent(word, w -> new IntArrayBuilder()).add(doc);
+      }
+    }
+
+    Index build() {
+      var wordCountBytes = new byte[wordCounts.size()];
+      var counts = wordCounts.toArray();
+      for (int doc = 0; doc < counts.length; doc++) {
+        wordCountBytes[doc] = (byte) counts[doc];
+      }
+
+      var terms = postings.keySet().toArray(String[]::new);
+      Arrays.sort(terms);
+      var termPostings = new int[terms.length][];
+      for (int term = 0; term < terms.length; term++) {
+        termPostings[term] = postings.get(terms[term]).toArray();
+      }
+      return new Index(
+          ids.toArray(), titles.toArray(String[]::new), wordCountBytes, terms, termPostings);
+    }
+  }
+
+  /** Growable array of primitive ints. */
+  private static class IntArrayBuilder {
+
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    void addAll(int[] more) {
+      if (size + more.length > values.length) {
+        values = Arrays.copyOf(values, Math.max(size + more.length, size * 2));
+      }
+      System.arraycopy(more, 0, values, size, more.length);
+      size += more.length;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+
+    int[] toSortedDistinctArray() {
+      var sorted = toArray();
+      Arrays.sort(sorted);
+      int distinct = 0;
+      for (int i = 0; i < sorted.length; i++) {
+        if (i == 0 || sorted[i] != sorted[i - 1]) {
+          sorted[distinct++] = sorted[i];
+        }
+      }
+      return Arrays.copyOf(sorted, distinct);
+    }
+  }
+}
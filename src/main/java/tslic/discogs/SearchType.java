@@ -0,0 +1,26 @@
+package tslic.discogs;
+
+/** What a search matches, and the type of entity it finds. */
+public enum SearchType {
+  /** Artists by name. */
+  ARTIST("artist"),
+  /** Releases by title. */
+  RELEASE("release"),
+  /** Masters by the title of their main release. */
+  MASTER("master"),
+  /** Labels by name. */
+  LABEL("label"),
+  /** Releases by catalog number prefix, ignoring case, spaces and punctuation. */
+  CATNO("release");
+
+  private final String resultType;
+
+  SearchType(String resultType) {
+    this.resultType = resultType;
+  }
+
+  /** Type of the found entities, as used in {@link Responses.SearchResult}. */
+  public String getResultType() {
+    return resultType;
+  }
+}
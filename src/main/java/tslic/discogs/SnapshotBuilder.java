@@ -0,0 +1,223 @@
+package tslic.discogs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import lombok.extern.log4j.Log4j2;
+import org.jboss.weld.environment.se.Weld;
+import tslic.discogs.providers.ObjectMapperProvider;
+
+/**
+ * Exports all entities from PostgreSQL into the snapshot file served by {@link SnapshotStore}, in
+ * the format described there. Run it after every dump import with the database settings of the
+ * service, {@code gradle buildSnapshot -PsnapshotFile=discogs.snapshot}.
+ */
+@Log4j2
+public class SnapshotBuilder {
+
+  private final Repository repository;
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+
+  SnapshotBuilder(Repository repository) {
+    this.repository = repository;
+  }
+
+  public static void main(String[] args) throws IOException {
+    var path =
+        Paths.get(
+            args.length == 0 ? Config.getString("SNAPSHOT_FILE", "discogs.snapshot") : args[0]);
+
+    Weld weld = new Weld();
+    try {
+      var repository = weld.initialize().select(Repository.class).get();
+      new SnapshotBuilder(repository).write(path);
+    } finally {
+      weld.shutdown();
+    }
+  }
+
+  /** Writes the snapshot next to its final location first, so readers never see a partial file. */
+  void write(Path path) throws IOException {
+    long start = System.nanoTime();
+    var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+    List<TypeWriter> types = new ArrayList<>();
+    try (var out = new PositionedOutputStream(temporary)) {
+      out.pad(SnapshotStore.HEADER_SIZE);
+
+      for (var type : EntityType.values()) {
+        var writer = new TypeWriter(type, out, temporary.toAbsolutePath().getParent());
+        switch (type) {
+          case ARTIST:
+            repository.exportArtists(
+                1, Integer.MAX_VALUE, artist -> writer.add(artist.getId(), artist));
+            break;
+          case RELEASE:
+            repository.exportReleases(
+                1, Integer.MAX_VALUE, release -> writer.add(release.getId(), release));
+            break;
+          case LABEL:
+            repository.exportLabels(
+                1, Integer.MAX_VALUE, label -> writer.add(label.getId(), label));
+            break;
+          case MASTER:
+            repository.exportMasters(
+                1, Integer.MAX_VALUE, master -> writer.add(master.getId(), master));
+            break;
+          default:
+            throw new IllegalArgumentException(type.name());
+        }
+        writer.finish();
+        types.add(writer);
+        log.info("Wrote {} {} entities", writer.count, type);
+      }
+
+      out.pad((int) (-out.position & 7));
+      for (var writer : types) {
+        writer.tableOffset = out.position;
+        writer.appendTable();
+      }
+    }
+
+    var header = ByteBuffer.allocate(SnapshotStore.HEADER_SIZE);
+    header.putInt(SnapshotStore.MAGIC).putInt(SnapshotStore.VERSION);
+    for (var writer : types) {
+      header
+          .putInt(writer.minId)
+          .putInt(writer.maxId)
+          .putInt((int) writer.count)
+          .putInt(writer.isSparse() ? 1 : 0)
+          .putLong(writer.tableOffset);
+    }
+    header.flip();
+    try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      channel.write(header, 0);
+      channel.force(true);
+    }
+
+    Files.move(
+        temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    log.info("Wrote snapshot {} in {} s", path, (System.nanoTime() - start) / 1_000_000_000);
+  }
+
+  /**
+   * Packs the entities of one type in id order and collects their ids and positions in a temporary
+   * file, which becomes the offset table of the type.
+   */
+  private class TypeWriter {
+
+    private final EntityType type;
+    private final PositionedOutputStream out;
+    private final Path tableFile;
+    private final DataOutputStream positions;
+
+    int minId = 1;
+    int maxId = 0;
+    long tableOffset;
+    long count;
+
+    TypeWriter(EntityType type, PositionedOutputStream out, Path directory) throws IOException {
+      this.type = type;
+      this.out = out;
+      this.tableFile =
+          Files.createTempFile(
+              directory, "snapshot-" + type.name().toLowerCase(Locale.ROOT), ".table");
+      this.positions =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tableFile)));
+    }
+
+    void add(int id, Object entity) {
+      try {
+        byte[] json = objectMapper.writeValueAsBytes(entity);
+        if (json.length + 4 > SnapshotStore.SEGMENT_SIZE) {
+          throw new IllegalStateException(type + " " + id + " does not fit into a segment");
+        }
+
+        long segmentEnd =
+            (out.position / SnapshotStore.SEGMENT_SIZE + 1) * SnapshotStore.SEGMENT_SIZE;
+        if (out.position + 4 + json.length > segmentEnd) {
+          out.pad((int) (segmentEnd - out.position));
+        }
+
+        if (count == 0) {
+          minId = id;
+        }
+        maxId = id;
+        count++;
+        positions.writeInt(id);
+        positions.writeLong(out.position);
+        out.write(ByteBuffer.allocate(4).putInt(json.length).array());
+        out.write(json);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    void finish() throws IOException {
+      positions.close();
+    }
+
+    /** Whether a table of id and position pairs is smaller than one with a slot for every id. */
+    boolean isSparse() {
+      return count > 0 && ((long) maxId - minId + 1) > 2 * count;
+    }
+
+    void appendTable() throws IOException {
+      try (var in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(tableFile)))) {
+        var table = new DataOutputStream(out);
+        int nextId = minId;
+        for (long i = 0; i < count; i++) {
+          int id = in.readInt();
+          long position = in.readLong();
+          if (isSparse()) {
+            table.writeLong(id);
+          } else {
+            // ids in between do not exist
+            for (; nextId < id; nextId++) {
+              table.writeLong(IntLongIndex.MISSING);
+            }
+            nextId++;
+          }
+          table.writeLong(position);
+        }
+        table.flush();
+      }
+      Files.delete(tableFile);
+    }
+  }
+
+  /** Buffered file output that knows its position beyond 2 GB. */
+  private static class PositionedOutputStream extends BufferedOutputStream {
+
+    long position;
+
+    PositionedOutputStream(Path path) throws IOException {
+      super(Files.newOutputStream(path), 1 << 16);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      position += len;
+    }
+
+    void pad(int bytes) throws IOException {
+      write(new byte[bytes], 0, bytes);
+    }
+  }
+}
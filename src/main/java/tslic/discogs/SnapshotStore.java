@@ -0,0 +1,196 @@
+package tslic.discogs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
+import lombok.extern.log4j.Log4j2;
+import tslic.discogs.Responses.Artist;
+import tslic.discogs.Responses.Label;
+import tslic.discogs.Responses.Master;
+import tslic.discogs.Responses.Release;
+import tslic.discogs.providers.ObjectMapperProvider;
+
+/**
+ * Entities served from a read-only snapshot file written by {@link SnapshotBuilder}, memory-mapped
+ * so that the data lives in the page cache instead of the heap and a node needs no database.
+ *
+ * <p>The file starts with a header holding, for each {@link EntityType}, the smallest and largest
+ * id, the number of entities, whether its offset table is sparse and the position of that table.
+ * Next come the entities as json prefixed by their length, packed in id order, and then the offset
+ * tables. A dense table has a slot for every id from the smallest to the largest one, holding the
+ * position of the entity or {@link IntLongIndex#MISSING}, and is read straight from the mapping. A
+ * sparse table lists id and position pairs and is loaded into an {@link IntLongIndex}. An entity
+ * never crosses a {@link #SEGMENT_SIZE} boundary, so it always lies within one mapping. Entities
+ * are read with absolute gets on the shared mapping, so locating one neither copies its bytes nor
+ * creates a buffer view, while decoding its json allocates the entity and the parser's buffers.
+ */
+@Log4j2
+@ApplicationScoped
+@Typed(SnapshotStore.class)
+public class SnapshotStore implements EntitySource {
+
+  static final int MAGIC = 0x44534e50;
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 128;
+  static final long SEGMENT_SIZE = 1L << 30;
+
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+  private final IntLongIndex[] offsets = new IntLongIndex[EntityType.values().length];
+  private MappedByteBuffer[] segments;
+
+  @PostConstruct
+  public void init() {
+    var path = Paths.get(Config.getString("SNAPSHOT_FILE", "discogs.snapshot"));
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+      for (int i = 0; i < segments.length; i++) {
+        long position = i * SEGMENT_SIZE;
+        segments[i] =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, size - position));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    var header = segments[0];
+    if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+      throw new IllegalStateException(path + " is not a snapshot of version " + VERSION);
+    }
+    for (var type : EntityType.values()) {
+      int at = 8 + type.ordinal() * 24;
+      int minId = header.getInt(at);
+      int maxId = header.getInt(at + 4);
+      int count = header.getInt(at + 8);
+      boolean sparse = header.getInt(at + 12) != 0;
+      long tableOffset = header.getLong(at + 16);
+
+      if (sparse) {
+        var ids = new int[count];
+        var positions = new long[count];
+        for (int i = 0; i < count; i++) {
+          ids[i] = (int) getLong(tableOffset + 16L * i);
+          positions[i] = getLong(tableOffset + 16L * i + 8);
+        }
+        offsets[type.ordinal()] = IntLongIndex.of(ids, positions);
+      } else {
+        offsets[type.ordinal()] =
+            id ->
+                id < minId || id > maxId
+                    ? IntLongIndex.MISSING
+                    : getLong(tableOffset + 8L * (id - minId));
+      }
+    }
+    log.info("Serving entities from snapshot {}", path);
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Artist>> fetchArtists(Collection<Integer> artistIds) {
+    return CompletableFuture.completedFuture(read(EntityType.ARTIST, artistIds, Artist.class));
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Release>> fetchReleases(Collection<Integer> releaseIds) {
+    return CompletableFuture.completedFuture(read(EntityType.RELEASE, releaseIds, Release.class));
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Label>> fetchLabels(Collection<Integer> labelIds) {
+    return CompletableFuture.completedFuture(read(EntityType.LABEL, labelIds, Label.class));
+  }
+
+  @Override
+  public CompletionStage<Map<Integer, Master>> fetchMasters(Collection<Integer> masterIds) {
+    return CompletableFuture.completedFuture(read(EntityType.MASTER, masterIds, Master.class));
+  }
+
+  private <T> Map<Integer, T> read(EntityType type, Collection<Integer> ids, Class<T> valueType) {
+    Map<Integer, T> entities = new HashMap<>();
+    for (Integer id : ids) {
+      var json = json(type, id);
+      if (json != null) {
+        try {
+          entities.put(id, objectMapper.readValue(json, valueType));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+    return entities;
+  }
+
+  /** The json of the entity, {@code null} if there is no such entity. */
+  InputStream json(EntityType type, int id) {
+    long start = offsets[type.ordinal()].get(id);
+    if (start == IntLongIndex.MISSING) {
+      return null;
+    }
+
+    var segment = segments[(int) (start / SEGMENT_SIZE)];
+    int position = (int) (start % SEGMENT_SIZE);
+    return new JsonInputStream(segment, position + 4, position + 4 + segment.getInt(position));
+  }
+
+  /**
+   * Reads a range of a mapping with absolute gets, which leave the position of the mapping shared
+   * by all threads untouched.
+   */
+  private static class JsonInputStream extends InputStream {
+
+    private final ByteBuffer segment;
+    private final int limit;
+    private int position;
+
+    JsonInputStream(ByteBuffer segment, int position, int limit) {
+      this.segment = segment;
+      this.position = position;
+      this.limit = limit;
+    }
+
+    @Override
+    public int read() {
+      return position < limit ? segment.get(position++) & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (position >= limit) {
+        return -1;
+      }
+
+      int read = Math.min(length, limit - position);
+      for (int i = 0; i < read; i++) {
+        bytes[offset + i] = segment.get(position++);
+      }
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return limit - position;
+    }
+  }
+
+  /** Longs are aligned to 8 bytes, so they never cross a segment boundary. */
+  private long getLong(long position) {
+    return segments[(int) (position / SEGMENT_SIZE)].getLong((int) (position % SEGMENT_SIZE));
+  }
+}
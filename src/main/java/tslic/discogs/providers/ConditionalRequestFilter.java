@@ -0,0 +1,147 @@
+package tslic.discogs.providers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Set;
+import java.util.zip.CRC32;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import tslic.discogs.Config;
+import tslic.discogs.DumpVersion;
+
+/**
+ * Adds {@code ETag}, {@code Last-Modified} and {@code Cache-Control} to data responses and answers
+ * conditional requests for an unchanged dump with 304 before the repository is queried. The ETag is
+ * the dump version plus a hash of the request uri, a gzip encoded body gets a {@code -gzip} suffix.
+ * {@code If-None-Match: *} only matches a resource that exists, so it is answered once the resource
+ * has responded.
+ */
+public class ConditionalRequestFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+  static final String GZIP_SUFFIX = "-gzip";
+
+  private static final Set<String> UNVERSIONED_PATHS = Set.of("admin", "metrics");
+
+  private final CacheControl cacheControl = new CacheControl();
+
+  @Inject private DumpVersion dumpVersion;
+
+  public ConditionalRequestFilter() {
+    cacheControl.setMaxAge(Config.getInt("CACHE_MAX_AGE_SECONDS", 3600));
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request) {
+    if (!isVersioned(request)) {
+      return;
+    }
+
+    String etag = etag(request);
+    Date lastModified = dumpVersion.getLastModified();
+
+    // If-Modified-Since is only considered in the absence of If-None-Match, see RFC 7232
+    String ifNoneMatch = request.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+    String ifModifiedSince = request.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE);
+    String matchingTag =
+        ifNoneMatch != null
+            ? matchingTag(ifNoneMatch, etag)
+            : ifModifiedSince != null && isNotModifiedSince(ifModifiedSince, lastModified)
+                ? etag
+                : null;
+
+    if (matchingTag != null) {
+      request.abortWith(
+          Response.notModified()
+              .header(HttpHeaders.ETAG, matchingTag)
+              .lastModified(lastModified)
+              .cacheControl(cacheControl)
+              .build());
+    }
+  }
+
+  @Override
+  public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+    if (!isVersioned(request) || response.getStatus() != Response.Status.OK.getStatusCode()) {
+      return;
+    }
+
+    response.getHeaders().putSingle(HttpHeaders.ETAG, etag(request));
+    response.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, dumpVersion.getLastModified());
+    response.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, cacheControl);
+
+    String ifNoneMatch = request.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null && isAny(ifNoneMatch)) {
+      response.setStatus(Response.Status.NOT_MODIFIED.getStatusCode());
+      response.setEntity(null);
+    }
+  }
+
+  private static boolean isVersioned(ContainerRequestContext request) {
+    String method = request.getMethod();
+    if (!method.equals("GET") && !method.equals("HEAD")) {
+      return false;
+    }
+
+    var segments = request.getUriInfo().getPathSegments();
+    return segments.isEmpty() || !UNVERSIONED_PATHS.contains(segments.get(0).getPath());
+  }
+
+  private String etag(ContainerRequestContext request) {
+    var crc = new CRC32();
+    crc.update(
+        request.getUriInfo().getRequestUri().getRawPath().getBytes(StandardCharsets.UTF_8));
+    String query = request.getUriInfo().getRequestUri().getRawQuery();
+    if (query != null) {
+      crc.update(query.getBytes(StandardCharsets.UTF_8));
+    }
+    return String.format("\"%s-%08x\"", dumpVersion.getVersion(), crc.getValue());
+  }
+
+  /**
+   * The entity tag of {@code If-None-Match} that matches regardless of content encoding, as the
+   * variant the client holds, or {@code null} if none does.
+   */
+  private static String matchingTag(String ifNoneMatch, String etag) {
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      String identityTag =
+          tag.endsWith(GZIP_SUFFIX + "\"")
+              ? tag.substring(0, tag.length() - GZIP_SUFFIX.length() - 1) + "\""
+              : tag;
+      if (identityTag.equals(etag)) {
+        return tag;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isAny(String ifNoneMatch) {
+    for (String tag : ifNoneMatch.split(",")) {
+      if (tag.trim().equals("*")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isNotModifiedSince(String ifModifiedSince, Date lastModified) {
+    try {
+      var since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return !lastModified.toInstant().isAfter(since.toInstant());
+    } catch (DateTimeParseException e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package tslic.discogs.providers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.List;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import tslic.discogs.JsonBytes;
+
+/** Writes pre-serialized {@link JsonBytes} without going through Jackson. */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class JsonBytesWriter implements MessageBodyWriter<JsonBytes> {
+
+  @Context private HttpHeaders requestHeaders;
+
+  @Override
+  public boolean isWriteable(
+      Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+    return JsonBytes.class.isAssignableFrom(type);
+  }
+
+  @Override
+  public void writeTo(
+      JsonBytes jsonBytes,
+      Class<?> type,
+      Type genericType,
+      Annotation[] annotations,
+      MediaType mediaType,
+      MultivaluedMap<String, Object> httpHeaders,
+      OutputStream entityStream)
+      throws IOException {
+    byte[] body = jsonBytes.getJson();
+
+    if (jsonBytes.getGzip() != null) {
+      httpHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (acceptsGzip()) {
+        body = jsonBytes.getGzip();
+        httpHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        // a strong validator must differ between content encodings of the same resource
+        Object etag = httpHeaders.getFirst(HttpHeaders.ETAG);
+        if (etag instanceof String && ((String) etag).endsWith("\"")) {
+          String tag = (String) etag;
+          httpHeaders.putSingle(
+              HttpHeaders.ETAG,
+              tag.substring(0, tag.length() - 1) + ConditionalRequestFilter.GZIP_SUFFIX + "\"");
+        }
+      }
+    }
+
+    httpHeaders.putSingle(HttpHeaders.CONTENT_LENGTH, body.length);
+    entityStream.write(body);
+  }
+
+  private boolean acceptsGzip() {
+    List<String> acceptEncodings = requestHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (acceptEncodings == null) {
+      return false;
+    }
+
+    for (String acceptEncoding : acceptEncodings) {
+      for (String coding : acceptEncoding.split(",")) {
+        String[] params = coding.split(";");
+        if (params[0].trim().equalsIgnoreCase("gzip")) {
+          return params.length == 1 || !params[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+      }
+    }
+    return false;
+  }
+}
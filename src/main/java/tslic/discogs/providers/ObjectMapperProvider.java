@@ -1,6 +1,7 @@
 package tslic.discogs.providers;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -13,13 +14,16 @@ public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
   private final ObjectMapper objectMapper;
 
   public ObjectMapperProvider() {
-    objectMapper =
-        new ObjectMapper()
-            .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
-            .setDefaultPropertyInclusion(Include.NON_NULL)
-            .configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false)
-            .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-    ;
+    objectMapper = createObjectMapper();
+  }
+
+  public static ObjectMapper createObjectMapper() {
+    return new ObjectMapper()
+        .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+        .setDefaultPropertyInclusion(Include.NON_NULL)
+        .configure(SerializationFeature.WRITE_EMPTY_JSON_ARRAYS, false)
+        .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
   }
 
   @Override
@@ -0,0 +1,22 @@
+package tslic.discogs.providers;
+
+import java.util.concurrent.RejectedExecutionException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import tslic.discogs.Config;
+
+/** Sheds load with 503 when the database query queue is full. */
+public class RejectedExecutionExceptionMapper
+    implements ExceptionMapper<RejectedExecutionException> {
+
+  private final int retryAfterSeconds = Config.getInt("DB_EXECUTOR_RETRY_AFTER_SECONDS", 1);
+
+  @Override
+  public Response toResponse(RejectedExecutionException exception) {
+    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+        .header("Retry-After", retryAfterSeconds)
+        .entity(exception.getMessage())
+        .type("text/plain")
+        .build();
+  }
+}
@@ -0,0 +1,67 @@
+package tslic.discogs.providers;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+/**
+ * Times requests per route template, such as {@code /releases/{releaseId}}, from when Jersey
+ * receives them until their response is written, including the time an async response waits for
+ * the database. Requests in progress, suspended ones among them, are gauged as well.
+ */
+public class RequestMetricsListener implements ApplicationEventListener {
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  @Inject private MeterRegistry meterRegistry;
+
+  @Override
+  public void onEvent(ApplicationEvent event) {
+    if (event.getType() == ApplicationEvent.Type.INITIALIZATION_FINISHED) {
+      Gauge.builder("http.server.requests.active", active, AtomicInteger::get)
+          .description("Requests received and not answered yet")
+          .register(meterRegistry);
+    }
+  }
+
+  @Override
+  public RequestEventListener onRequest(RequestEvent requestEvent) {
+    long start = System.nanoTime();
+    active.incrementAndGet();
+    return event -> {
+      if (event.getType() != RequestEvent.Type.FINISHED) {
+        return;
+      }
+
+      active.decrementAndGet();
+      var response = event.getContainerResponse();
+      Timer.builder("http.server.requests")
+          .tag("method", event.getContainerRequest().getMethod())
+          .tag("route", route(event))
+          .tag("status", response != null ? String.valueOf(response.getStatus()) : "500")
+          .register(meterRegistry)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    };
+  }
+
+  /** The matched templates are listed from the innermost resource outwards. */
+  private static String route(RequestEvent event) {
+    var templates = event.getUriInfo().getMatchedTemplates();
+    if (templates.isEmpty()) {
+      return "none";
+    }
+
+    var route = new StringBuilder();
+    for (int i = templates.size() - 1; i >= 0; i--) {
+      route.append(templates.get(i).getTemplate());
+    }
+    return route.toString();
+  }
+}
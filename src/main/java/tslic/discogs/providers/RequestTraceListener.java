@@ -0,0 +1,73 @@
+package tslic.discogs.providers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javax.ws.rs.core.HttpHeaders;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import tslic.discogs.Config;
+import tslic.discogs.QueryTrace;
+import tslic.discogs.Resources;
+
+/**
+ * With {@code QUERY_TRACING} enabled, traces the queries of every request and reports them in a
+ * {@code Server-Timing} header. A request sending {@code X-Query-Trace: json} with the admin token
+ * as bearer {@code Authorization} also gets the tables, bind values, row counts and timings of its
+ * queries as json in an {@code X-Query-Trace} header.
+ */
+public class RequestTraceListener implements ApplicationEventListener {
+
+  static final String TRACE_HEADER = "X-Query-Trace";
+
+  private final boolean enabled = Config.getBoolean("QUERY_TRACING", false);
+  private final ObjectMapper objectMapper = ObjectMapperProvider.createObjectMapper();
+
+  @Override
+  public void onEvent(ApplicationEvent event) {}
+
+  @Override
+  public RequestEventListener onRequest(RequestEvent requestEvent) {
+    if (!enabled) {
+      return null;
+    }
+
+    var request = requestEvent.getContainerRequest();
+    String authorization = request.getHeaderString(HttpHeaders.AUTHORIZATION);
+    var trace =
+        new QueryTrace(
+            "json".equals(request.getHeaderString(TRACE_HEADER))
+                && Resources.Admin.isAuthorized(authorization));
+    return event -> {
+      switch (event.getType()) {
+        case RESOURCE_METHOD_START:
+          QueryTrace.attach(trace);
+          break;
+        case RESOURCE_METHOD_FINISHED:
+          QueryTrace.detach();
+          break;
+        case RESP_FILTERS_START:
+          addHeaders(event, trace);
+          break;
+        default:
+          break;
+      }
+    };
+  }
+
+  private void addHeaders(RequestEvent event, QueryTrace trace) {
+    var headers = event.getContainerResponse().getHeaders();
+    if (!trace.getQueries().isEmpty()) {
+      headers.putSingle("Server-Timing", trace.toServerTiming());
+    }
+
+    if (trace.hasBindValues()) {
+      try {
+        headers.putSingle(TRACE_HEADER, objectMapper.writeValueAsString(trace.getQueries()));
+      } catch (JsonProcessingException e) {
+        headers.putSingle(TRACE_HEADER, e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package tslic.discogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BatchLoaderTest {
+
+  private static final long LONG_WINDOW_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final List<List<Integer>> batches = new ArrayList<>();
+  private final List<CompletableFuture<Map<Integer, String>>> fetches = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  void loadsOfAQueuedIdShareItsStage() {
+    var loader = loader(LONG_WINDOW_MICROS, 2);
+
+    var first = loader.load(1);
+    var second = loader.load(1);
+    loader.load(2);
+
+    assertSame(first, second);
+    assertEquals(List.of(List.of(1, 2)), batches());
+  }
+
+  @Test
+  void loadsOfAnIdBeingFetchedShareItsStage() throws Exception {
+    var loader = loader(0, 100);
+
+    var first = loader.load(1);
+    var second = loader.load(1);
+    assertSame(first, second);
+    assertEquals(List.of(List.of(1)), batches());
+
+    fetch(0).complete(Map.of(1, "one"));
+    assertEquals("one", get(first));
+
+    loader.load(1);
+    assertEquals(List.of(List.of(1), List.of(1)), batches());
+  }
+
+  @Test
+  void fullBatchIsDispatchedBeforeTheWindowEnds() throws Exception {
+    var loader = loader(LONG_WINDOW_MICROS, 3);
+
+    var one = loader.load(1);
+    loader.load(2);
+    assertTrue(batches().isEmpty());
+
+    var three = loader.load(3);
+    var four = loader.load(4);
+    assertEquals(List.of(List.of(1, 2, 3)), batches());
+
+    fetch(0).complete(Map.of(1, "one", 3, "three"));
+    assertEquals("one", get(one));
+    assertEquals("three", get(three));
+    assertFalse(four.toCompletableFuture().isDone());
+  }
+
+  @Test
+  void queuedIdsAreDispatchedWhenTheWindowEnds() throws Exception {
+    var loader = loader(TimeUnit.MILLISECONDS.toMicros(20), 100);
+
+    var one = loader.load(1);
+    var two = loader.load(2);
+    assertTrue(batches().isEmpty());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (batches().isEmpty() && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(List.of(List.of(1, 2)), batches());
+
+    fetch(0).complete(Map.of(2, "two"));
+    assertNull(get(one));
+    assertEquals("two", get(two));
+  }
+
+  @Test
+  void failedFetchFailsEveryWaiter() {
+    var loader = loader(LONG_WINDOW_MICROS, 3);
+
+    var one = loader.load(1);
+    var sameOne = loader.load(1);
+    var two = loader.load(2);
+    var three = loader.load(3);
+    var failure = new IllegalStateException("Connection refused");
+    fetch(0).completeExceptionally(failure);
+
+    for (var stage : List.of(one, sameOne, two, three)) {
+      var e = assertThrows(ExecutionException.class, () -> get(stage));
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  void throwingBatchFunctionFailsItsBatchAndLoadsAgain() {
+    var failure = new IllegalStateException("Too many queries");
+    var loader =
+        new BatchLoader<String>(
+            "test",
+            ids -> {
+              throw failure;
+            },
+            scheduler,
+            0,
+            100,
+            new SimpleMeterRegistry());
+
+    var first = loader.load(1);
+    var e = assertThrows(ExecutionException.class, () -> get(first));
+    assertSame(failure, e.getCause());
+
+    var second = loader.load(1);
+    assertNotSame(first, second);
+  }
+
+  private BatchLoader<String> loader(long windowMicros, int maxBatchSize) {
+    Function<Collection<Integer>, CompletionStage<Map<Integer, String>>> fetcher =
+        ids -> {
+          var fetch = new CompletableFuture<Map<Integer, String>>();
+          synchronized (batches) {
+            batches.add(List.copyOf(ids));
+            fetches.add(fetch);
+          }
+          return fetch;
+        };
+    return new BatchLoader<>(
+        "test", fetcher, scheduler, windowMicros, maxBatchSize, new SimpleMeterRegistry());
+  }
+
+  private List<List<Integer>> batches() {
+    synchronized (batches) {
+      return List.copyOf(batches);
+    }
+  }
+
+  private CompletableFuture<Map<Integer, String>> fetch(int index) {
+    synchronized (batches) {
+      return fetches.get(index);
+    }
+  }
+
+  private static <T> T get(CompletionStage<T> stage) throws Exception {
+    return stage.toCompletableFuture().get(5, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,108 @@
+package tslic.discogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class IntLongIndexTest {
+
+  @Test
+  void emptyIndexHasNoKeys() {
+    var index = IntLongIndex.of(new int[0], new long[0]);
+
+    assertEquals(IntLongIndex.MISSING, index.get(0));
+    assertEquals(IntLongIndex.MISSING, index.get(1));
+  }
+
+  @Test
+  void denseKeysAreKeptInADenseIndex() {
+    int[] keys = IntStream.rangeClosed(1, 1000).filter(key -> key % 7 != 0).toArray();
+    var index = IntLongIndex.of(keys, values(keys));
+
+    assertTrue(index instanceof IntLongIndex.Dense);
+    assertValues(keys, index);
+    assertEquals(IntLongIndex.MISSING, index.get(7));
+    assertEquals(IntLongIndex.MISSING, index.get(0));
+    assertEquals(IntLongIndex.MISSING, index.get(1001));
+    assertEquals(IntLongIndex.MISSING, index.get(Integer.MIN_VALUE));
+  }
+
+  @Test
+  void sparseKeysAreKeptInAnOpenAddressingIndex() {
+    int[] keys = IntStream.range(0, 1000).map(i -> i * 10 + 3).toArray();
+    var index = IntLongIndex.of(keys, values(keys));
+
+    assertTrue(index instanceof IntLongIndex.OpenAddressing);
+    assertValues(keys, index);
+    assertEquals(IntLongIndex.MISSING, index.get(4));
+    assertEquals(IntLongIndex.MISSING, index.get(-3));
+    assertEquals(IntLongIndex.MISSING, index.get(Integer.MAX_VALUE));
+  }
+
+  @Test
+  void indexChoiceFollowsTheSmallerSize() {
+    // 12 bytes for each of 4 slots against 8 bytes for each key in the range
+    var dense = IntLongIndex.of(new int[] {1, 6}, new long[2]);
+    var openAddressing = IntLongIndex.of(new int[] {1, 7}, new long[2]);
+
+    assertTrue(dense instanceof IntLongIndex.Dense);
+    assertTrue(openAddressing instanceof IntLongIndex.OpenAddressing);
+  }
+
+  @Test
+  void capacityIsTheSmallestPowerOfTwoAtHalfLoad() {
+    assertEquals(2, IntLongIndex.OpenAddressing.capacity(0));
+    assertEquals(2, IntLongIndex.OpenAddressing.capacity(1));
+    assertEquals(4, IntLongIndex.OpenAddressing.capacity(2));
+    assertEquals(8, IntLongIndex.OpenAddressing.capacity(3));
+    assertEquals(8, IntLongIndex.OpenAddressing.capacity(4));
+    assertEquals(16, IntLongIndex.OpenAddressing.capacity(5));
+
+    for (int size = 1; size <= 100_000; size++) {
+      int capacity = IntLongIndex.OpenAddressing.capacity(size);
+      assertEquals(1, Integer.bitCount(capacity));
+      assertTrue(2L * size <= capacity, "load factor above one half for " + size);
+      assertTrue(2L * size > capacity / 2, "not the smallest capacity for " + size);
+    }
+  }
+
+  @Test
+  void collidingKeysAreProbedPastEachOther() {
+    // four keys hashing to the last of 8 slots, so probing wraps around to the first ones
+    int[] colliding = keysInSlot(7, 8, 5);
+    int[] keys = {colliding[0], colliding[1], colliding[2], colliding[3]};
+    var index = new IntLongIndex.OpenAddressing(keys, values(keys));
+
+    assertValues(keys, index);
+    assertEquals(IntLongIndex.MISSING, index.get(colliding[4]));
+  }
+
+  @Test
+  void minValueCannotBeAKey() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new IntLongIndex.OpenAddressing(new int[] {Integer.MIN_VALUE}, new long[] {0}));
+  }
+
+  /** Keys with the Fibonacci hash of {@link IntLongIndex.OpenAddressing} in the given slot. */
+  private static int[] keysInSlot(int slot, int capacity, int count) {
+    int shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    return IntStream.iterate(1, key -> key + 1)
+        .filter(key -> (key * 0x9E3779B9) >>> shift == slot)
+        .limit(count)
+        .toArray();
+  }
+
+  private static long[] values(int[] keys) {
+    return IntStream.of(keys).mapToLong(key -> 64L * key).toArray();
+  }
+
+  private static void assertValues(int[] keys, IntLongIndex index) {
+    for (int key : keys) {
+      assertEquals(64L * key, index.get(key), "value of " + key);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package tslic.discogs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static tslic.discogs.Tables.TRACKS;
+import static tslic.discogs.Tables.TRACK_ARTIST_MAPS;
+import static tslic.discogs.Tables.TRACK_EXTRA_ARTIST_MAPS;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.jooq.DSLContext;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import tslic.discogs.Responses.Track;
+import tslic.discogs.Responses.TrackArtist;
+import tslic.discogs.tables.records.TrackArtistMapsRecord;
+import tslic.discogs.tables.records.TrackExtraArtistMapsRecord;
+import tslic.discogs.tables.records.TracksRecord;
+
+class RepositoryTest {
+
+  private final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+  private final Result<TracksRecord> tracks = create.newResult(TRACKS);
+  private final Result<TrackArtistMapsRecord> artists = create.newResult(TRACK_ARTIST_MAPS);
+  private final Result<TrackExtraArtistMapsRecord> extraArtists =
+      create.newResult(TRACK_EXTRA_ARTIST_MAPS);
+
+  @Test
+  void tracklistsMergeCreditsIntoTheirTracks() {
+    addTrack(1, 0);
+    addTrack(1, 1);
+    addTrack(2, 0);
+    addArtist(1, 0, 10);
+    addArtist(1, 0, 11);
+    addArtist(1, 1, 12);
+    addArtist(2, 0, 13);
+    addExtraArtist(1, 1, 20);
+    addExtraArtist(2, 0, 21);
+
+    var tracklists = Repository.tracklists(tracks, artists, extraArtists);
+
+    assertEquals(List.of("1/0", "1/1"), titles(tracklists.get(1)));
+    assertEquals(List.of("2/0"), titles(tracklists.get(2)));
+    assertEquals(List.of(10, 11), ids(tracklists.get(1).get(0).getArtists()));
+    assertNull(tracklists.get(1).get(0).getExtraartists());
+    assertEquals(List.of(12), ids(tracklists.get(1).get(1).getArtists()));
+    assertEquals(List.of(20), ids(tracklists.get(1).get(1).getExtraartists()));
+    assertEquals(List.of(13), ids(tracklists.get(2).get(0).getArtists()));
+    assertEquals(List.of(21), ids(tracklists.get(2).get(0).getExtraartists()));
+  }
+
+  @Test
+  void tracksWithoutCreditsHaveNoArtists() {
+    addTrack(1, 0);
+    addTrack(1, 1);
+    addTrack(1, 2);
+    addArtist(1, 1, 10);
+
+    var tracklist = Repository.tracklists(tracks, artists, extraArtists).get(1);
+
+    assertEquals(3, tracklist.size());
+    assertNull(tracklist.get(0).getArtists());
+    assertEquals(List.of(10), ids(tracklist.get(1).getArtists()));
+    assertNull(tracklist.get(2).getArtists());
+    tracklist.forEach(track -> assertNull(track.getExtraartists()));
+  }
+
+  @Test
+  void creditsOfMissingTracksAreDropped() {
+    addTrack(1, 1);
+    addTrack(3, 0);
+    addArtist(1, 0, 10);
+    addArtist(1, 1, 11);
+    addArtist(1, 2, 12);
+    addArtist(2, 0, 13);
+    addArtist(3, 0, 14);
+    addArtist(4, 0, 15);
+    addExtraArtist(2, 5, 20);
+    addExtraArtist(3, 0, 21);
+
+    var tracklists = Repository.tracklists(tracks, artists, extraArtists);
+
+    assertEquals(Map.of(1, List.of("1/1"), 3, List.of("3/0")), titles(tracklists));
+    assertEquals(List.of(11), ids(tracklists.get(1).get(0).getArtists()));
+    assertNull(tracklists.get(1).get(0).getExtraartists());
+    assertEquals(List.of(14), ids(tracklists.get(3).get(0).getArtists()));
+    assertEquals(List.of(21), ids(tracklists.get(3).get(0).getExtraartists()));
+  }
+
+  @Test
+  void unorderedTracksAndCreditsAreSortedFirst() {
+    for (int release = 1; release <= 5; release++) {
+      for (int ofst = 0; ofst < 4; ofst++) {
+        addTrack(release, ofst);
+        addArtist(release, ofst, release * 10 + ofst);
+        addExtraArtist(release, ofst, release * 100 + ofst);
+      }
+    }
+    var ordered = describe(Repository.tracklists(tracks, artists, extraArtists));
+
+    var random = new Random(1);
+    Collections.shuffle(tracks, random);
+    Collections.shuffle(artists, random);
+    Collections.shuffle(extraArtists, random);
+    var shuffled = Repository.tracklists(tracks, artists, extraArtists);
+
+    assertEquals(ordered, describe(shuffled));
+    assertEquals(List.of("2/0", "2/1", "2/2", "2/3"), titles(shuffled.get(2)));
+    assertEquals(List.of(23), ids(shuffled.get(2).get(3).getArtists()));
+    assertEquals(List.of(203), ids(shuffled.get(2).get(3).getExtraartists()));
+  }
+
+  @Test
+  void groupAppendsSeparateRunsOfAnOwner() {
+    addArtist(1, 0, 10);
+    addArtist(2, 0, 20);
+    addArtist(1, 1, 11);
+
+    var groups =
+        Repository.group(artists, TRACK_ARTIST_MAPS.RELEASE_ID, Repository::toTrackArtist);
+
+    assertEquals(List.of(10, 11), ids(groups.get(1)));
+    assertEquals(List.of(20), ids(groups.get(2)));
+  }
+
+  private void addTrack(int releaseId, int ofst) {
+    var track = create.newRecord(TRACKS);
+    track.set(TRACKS.RELEASE_ID, releaseId);
+    track.set(TRACKS.OFST, ofst);
+    track.set(TRACKS.POSITION, String.valueOf(ofst + 1));
+    track.set(TRACKS.TITLE, releaseId + "/" + ofst);
+    tracks.add(track);
+  }
+
+  private void addArtist(int releaseId, int trackOfst, int artistId) {
+    var artist = create.newRecord(TRACK_ARTIST_MAPS);
+    artist.set(TRACK_ARTIST_MAPS.RELEASE_ID, releaseId);
+    artist.set(TRACK_ARTIST_MAPS.TRACK_OFST, trackOfst);
+    artist.set(TRACK_ARTIST_MAPS.ARTIST_ID, artistId);
+    artist.set(TRACK_ARTIST_MAPS.NAME, "Artist " + artistId);
+    artists.add(artist);
+  }
+
+  private void addExtraArtist(int releaseId, int trackOfst, int artistId) {
+    var artist = create.newRecord(TRACK_EXTRA_ARTIST_MAPS);
+    artist.set(TRACK_EXTRA_ARTIST_MAPS.RELEASE_ID, releaseId);
+    artist.set(TRACK_EXTRA_ARTIST_MAPS.TRACK_OFST, trackOfst);
+    artist.set(TRACK_EXTRA_ARTIST_MAPS.ARTIST_ID, artistId);
+    artist.set(TRACK_EXTRA_ARTIST_MAPS.NAME, "Artist " + artistId);
+    artist.set(TRACK_EXTRA_ARTIST_MAPS.ROLE, "Remix");
+    extraArtists.add(artist);
+  }
+
+  private static List<String> titles(List<Track> tracklist) {
+    return tracklist.stream().map(Track::getTitle).collect(Collectors.toList());
+  }
+
+  private static Map<Integer, List<String>> titles(Map<Integer, List<Track>> tracklists) {
+    return tracklists.entrySet().stream()
+        .collect(Collectors.toMap(Map.Entry::getKey, entry -> titles(entry.getValue())));
+  }
+
+  /** The titles and credited artist ids of the tracks, DTOs compare their urls by host address. */
+  private static Map<Integer, List<String>> describe(Map<Integer, List<Track>> tracklists) {
+    return tracklists.entrySet().stream()
+        .collect(
+            Collectors.toMap(
+                Map.Entry::getKey,
+                entry ->
+                    entry.getValue().stream()
+                        .map(
+                            track ->
+                                track.getTitle()
+                                    + " "
+                                    + ids(track.getArtists())
+                                    + " "
+                                    + ids(track.getExtraartists()))
+                        .collect(Collectors.toList())));
+  }
+
+  private static List<Integer> ids(List<? extends TrackArtist> artists) {
+    return artists.stream().map(TrackArtist::getId).collect(Collectors.toList());
+  }
+}
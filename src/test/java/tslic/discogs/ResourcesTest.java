@@ -0,0 +1,83 @@
+package tslic.discogs;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.jupiter.api.Test;
+
+class ResourcesTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void streamNdjsonWritesOneValuePerLine() throws IOException {
+    var output = new ByteArrayOutputStream();
+    Resources.streamNdjson(
+            consumer -> {
+              consumer.accept(Map.of("id", 1));
+              consumer.accept(Map.of("id", 2));
+            })
+        .write(output);
+
+    var lines = output.toString(UTF_8).split("\n", -1);
+    assertEquals(3, lines.length);
+    assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+    assertEquals(2, objectMapper.readTree(lines[1]).get("id").asInt());
+    assertEquals("", lines[2]);
+  }
+
+  @Test
+  void streamNdjsonRejectedBeforeTheFirstValueWritesNothing() {
+    var output = new ByteArrayOutputStream();
+    var stream =
+        Resources.streamNdjson(
+            consumer -> {
+              throw new RejectedExecutionException("Too many streamed listings and exports");
+            });
+
+    assertThrows(RejectedExecutionException.class, () -> stream.write(output));
+    assertEquals(0, output.size());
+  }
+
+  @Test
+  void streamNdjsonFailingMidValueLeavesAnUnparseableLastLine() {
+    var output = new ByteArrayOutputStream();
+    var stream =
+        Resources.streamNdjson(
+            consumer -> {
+              consumer.accept(Map.of("id", 1));
+              consumer.accept(new FailingRelease());
+            });
+
+    assertThrows(IOException.class, () -> stream.write(output));
+
+    var lines = output.toString(UTF_8).split("\n", -1);
+    assertEquals(2, lines.length);
+    assertEquals(1, objectMapper.readTree(lines[0]).get("id").asInt());
+    assertFalse(lines[1].isEmpty());
+    assertThrows(JsonProcessingException.class, () -> objectMapper.readTree(lines[1]));
+  }
+
+  /** A release whose tracklist fails to load after its id has been written. */
+  @JsonPropertyOrder({"id", "tracklist"})
+  static class FailingRelease {
+
+    public int getId() {
+      return 2;
+    }
+
+    public List<Object> getTracklist() {
+      throw new IllegalStateException("Cursor closed");
+    }
+  }
+}